@@ -22,6 +22,8 @@
  */
 package name.livitski.games.puzzle.android;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
 
@@ -30,6 +32,7 @@ import name.livitski.games.puzzle.android.model.Game;
 import name.livitski.games.puzzle.android.model.Game.Level;
 import name.livitski.games.puzzle.android.model.ImageProcessingException;
 import name.livitski.games.puzzle.android.model.Move;
+import name.livitski.games.puzzle.android.model.MoveJournal;
 import name.livitski.games.puzzle.android.model.MoveListener;
 import name.livitski.games.puzzle.android.model.Tile;
 import android.app.Dialog;
@@ -100,11 +103,32 @@ public class GamePlay extends Activity implements OnClickListener, OnLongClickLi
   return true;
  }
 
+ @Override
+ public boolean onPrepareOptionsMenu(Menu menu)
+ {
+  final boolean ready = null == previewTimer;
+  menu.findItem(R.id.item_undo).setEnabled(ready && game.canUndo());
+  menu.findItem(R.id.item_redo).setEnabled(ready && game.canRedo());
+  return super.onPrepareOptionsMenu(menu);
+ }
+
  @Override
  public boolean onOptionsItemSelected(MenuItem item)
  {
   switch (item.getItemId())
   {
+  case R.id.item_undo:
+   if (null == previewTimer && game.canUndo())
+    game.undo();
+   return true;
+  case R.id.item_redo:
+   if (null == previewTimer && game.canRedo())
+   {
+    game.redo();
+    if (game.isSolved())
+     congratulate();
+   }
+   return true;
   case R.id.item_reshuffle:
    restart(false);
    break;
@@ -150,14 +174,9 @@ public class GamePlay extends Activity implements OnClickListener, OnLongClickLi
   */
  public void tileMoved(final Tile from, final Tile to)
  {
-  // repeat for both tiles
-  for (Tile tile : new Tile[] { from, to })
-  {
-   TextView numericCell = numericCells[tile.getRow()][tile.getColumn()];
-   assignTile(numericCell, tile);
-   ImageView imageCell = imageCells[tile.getRow()][tile.getColumn()];
-   assignTile(imageCell, tile);
-  }
+  // repeat for both tiles without allocating an array on every move
+  showTile(from);
+  showTile(to);
  }
 
  @Override
@@ -202,7 +221,19 @@ public class GamePlay extends Activity implements OnClickListener, OnLongClickLi
  protected void onPause()
  {
   super.onPause();
+  game.cancelHints();
   saveSettings();
+  if (null != journal)
+   journal.flush();
+ }
+
+ @Override
+ protected void onDestroy()
+ {
+  if (null != journal)
+   try { journal.close(); } catch (Exception ignored) {}
+  journal = null;
+  super.onDestroy();
  }
 
  /** Returns the current board size. */
@@ -352,17 +383,34 @@ public class GamePlay extends Activity implements OnClickListener, OnLongClickLi
    Log.w(getClass().getName(), "Error loading settings", invalid);
    newGame(null);
   }
-  game.load(preferences);
+  // the journal is opened once the game is created, so that the
+  // game it holds is not discarded before being recovered
+  try
+  {
+   journal = new MoveJournal(new File(getFilesDir(), JOURNAL_DIRECTORY));
+  }
+  catch (IOException failure)
+  {
+   Log.w(getClass().getName(), "Error opening the move journal", failure);
+  }
+  if (null == journal || !game.recover(journal))
+  {
+   game.load(preferences);
+   game.setJournal(journal);
+  }
  }
 
  protected void newGame(Level difficulty)
  {
+  if (null != game)
+   game.cancelHints();
   if (null != difficulty)
    game = new Game(difficulty);
   else if (null == game)
    game = new Game();
   else
    game = new Game(game.getDifficulty());
+  game.setJournal(journal);
  }
 
  protected void initBoard()
@@ -642,7 +690,7 @@ public class GamePlay extends Activity implements OnClickListener, OnLongClickLi
  private void assignTile(final TextView cell, final Tile tile)
  {
   final int number = tile.getNumber();
-  cell.setText(0 == number ? " " : Integer.toString(number));
+  cell.setText(tileLabel(number));
   cell.setTag(tile);
   cell.setBackgroundColor(getResources().getColor(
     0 == number ? R.color.blank_tile : R.color.numeric_tile_background));
@@ -654,6 +702,23 @@ public class GamePlay extends Activity implements OnClickListener, OnLongClickLi
   cell.setTag(tile);
  }
 
+ private void showTile(Tile tile)
+ {
+  assignTile(numericCells[tile.getRow()][tile.getColumn()], tile);
+  assignTile(imageCells[tile.getRow()][tile.getColumn()], tile);
+ }
+
+ /** Returns the text of a numeric tile, reusing strings across moves. */
+ private static String tileLabel(int number)
+ {
+  if (TILE_LABELS.length <= number)
+   return Integer.toString(number);
+  String label = TILE_LABELS[number];
+  if (null == label)
+   TILE_LABELS[number] = label = 0 == number ? " " : Integer.toString(number);
+  return label;
+ }
+
  private void initImageCell(ImageView imageCell)
  {
   imageCell.setOnClickListener(this);
@@ -684,6 +749,7 @@ public class GamePlay extends Activity implements OnClickListener, OnLongClickLi
  }
 
  private Game game;
+ private MoveJournal journal;
  private RelativeLayout windowLayout;
  private TableLayout numericBoardView, imageBoardView;
  private TextView[][] numericCells;
@@ -695,4 +761,7 @@ public class GamePlay extends Activity implements OnClickListener, OnLongClickLi
 
  private static final int IMAGE_SELECTION_REQUEST_CODE = 1;
  private static final int CONGRATULATIONS_REQUEST_CODE = 2;
+ private static final String JOURNAL_DIRECTORY = "journal";
+ private static final String[] TILE_LABELS = new String[Level.HARD.getBoardSize()
+   * Level.HARD.getBoardSize()];
 }
\ No newline at end of file
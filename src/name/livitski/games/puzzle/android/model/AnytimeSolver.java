@@ -0,0 +1,321 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds a solution quickly, then keeps looking for shorter solutions
+ * until it proves one of them optimal. The search runs in phases of
+ * weighted iterative-deepening A* with decreasing weights. A phase with
+ * weight <code>w</code> finds solutions no longer than <code>w</code>
+ * times the optimal length, and ignores paths that cannot beat the best
+ * solution known. The last phase has weight <code>1</code>, so its
+ * result is optimal.
+ * For the explanation of weighted search, please refer to:
+ * Ira Pohl, Heuristic search viewed as path finding in a graph,
+ * Artificial Intelligence 1 (1970), 193-204.
+ */
+public class AnytimeSolver extends Solver
+{
+ /**
+  * Returns the heuristic that guides this solver.
+  */
+ public Heuristic getHeuristic()
+ {
+  return heuristic;
+ }
+
+ /**
+  * Runs all phases of the search on the calling thread.
+  * @return the optimal solution
+  */
+ @Override
+ public Solution solve(BoardState start)
+ {
+  Task task = new Task(start, null, null);
+  task.run();
+  return task.getBest();
+ }
+
+ /**
+  * Starts the search on an executor and waits until it finds the
+  * first solution or a deadline passes. The search goes on after
+  * that, publishing shorter solutions to a listener.
+  * @param start the position to solve
+  * @param timeoutMillis how long to wait for the first solution, in
+  * milliseconds
+  * @param executor the executor that runs the search
+  * @param listener receives all solutions found, including the first one,
+  * or <code>null</code> if the caller does not need them
+  * @return the task that runs the search, which can
+  * {@link Task#getBest() return} the best solution found by the deadline,
+  * if any, or be {@link Task#cancel() cancelled}
+  * @throws InterruptedException if the calling thread is interrupted
+  * while waiting for the first solution
+  */
+ public Task solve(BoardState start, long timeoutMillis,
+   ExecutorService executor, SolutionListener listener)
+ 	throws InterruptedException
+ {
+  Task task = start(start, executor, listener);
+  task.await(timeoutMillis);
+  return task;
+ }
+
+ /**
+  * Starts the search on an executor without waiting for solutions.
+  * @param start the position to solve
+  * @param executor the executor that runs the search
+  * @param listener receives all solutions found or <code>null</code>
+  * @return the task that runs the search
+  */
+ public Task start(BoardState start, ExecutorService executor, SolutionListener listener)
+ {
+  Task task = new Task(start, null, listener);
+  task.future = executor.submit(task);
+  return task;
+ }
+
+ /**
+  * Prepares the search for a position that the caller will run, starting
+  * with a known solution. Only solutions shorter than the known one are
+  * looked for, so its length saves search effort. The known solution is
+  * {@link Task#getBest() available} from the task right away, but is not
+  * published to the listener unless the search proves it optimal.
+  * @param start the position to solve
+  * @param incumbent moves that are known to solve the position, or
+  * <code>null</code> if there are none
+  * @param listener receives all solutions found or <code>null</code>
+  * @return the task to be run by the caller
+  * @throws IllegalArgumentException if the incumbent moves do not
+  * solve the position
+  */
+ public Task prepare(BoardState start, List<Move> incumbent, SolutionListener listener)
+ {
+  return new Task(start, incumbent, listener);
+ }
+
+ /**
+  * Creates a solver with a specific sequence of weights.
+  * @param heuristic an admissible heuristic for the boards
+  * this solver will handle
+  * @param weights the weights of search phases in decreasing order,
+  * the last of which must be <code>1</code>, all in multiples of
+  * <code>1/16</code>, which is the precision of weighted search
+  */
+ public AnytimeSolver(Heuristic heuristic, double... weights)
+ {
+  if (0 == weights.length || 1. != weights[weights.length - 1])
+   throw new IllegalArgumentException("The last phase must have weight 1");
+  for (int i = 1; weights.length > i; i++)
+   if (weights[i - 1] <= weights[i])
+    throw new IllegalArgumentException("Weights must decrease from phase to phase");
+  for (double weight : weights)
+   if (Math.rint(weight * WEIGHT_SCALE) != weight * WEIGHT_SCALE)
+    throw new IllegalArgumentException("Weight " + weight
+      + " is not a multiple of 1/" + WEIGHT_SCALE);
+  this.heuristic = heuristic;
+  this.weights = weights.clone();
+ }
+
+ /**
+  * Creates a solver with default weights of the search phases.
+  * @param heuristic an admissible heuristic for the boards
+  * this solver will handle
+  */
+ public AnytimeSolver(Heuristic heuristic)
+ {
+  this(heuristic, DEFAULT_WEIGHTS);
+ }
+
+ /**
+  * Runs the search for a position and holds the best solution found.
+  */
+ public class Task implements Runnable
+ {
+  /** Returns the position being solved. */
+  public BoardState getStart()
+  {
+   return start;
+  }
+
+  /**
+   * Returns the shortest solution found so far, or <code>null</code>
+   * if there are none yet.
+   */
+  public Solution getBest()
+  {
+   return best;
+  }
+
+  /**
+   * Tells whether the search has finished, either by proving
+   * the best solution optimal or by being cancelled.
+   */
+  public boolean isDone()
+  {
+   return done;
+  }
+
+  /**
+   * Waits until a solution is found, the search is over, or
+   * a timeout expires.
+   * @return the best solution found or <code>null</code> if
+   * there are none
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public synchronized Solution await(long timeoutMillis)
+  	throws InterruptedException
+  {
+   final long deadline = System.currentTimeMillis() + timeoutMillis;
+   for (long left = timeoutMillis; null == best && !done && 0 < left;
+   	left = deadline - System.currentTimeMillis())
+    wait(left);
+   return best;
+  }
+
+  /**
+   * Waits until the search is over or a timeout expires, allowing
+   * the search to improve on solutions it has already found.
+   * @return the best solution found or <code>null</code> if
+   * there are none
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public synchronized Solution awaitCompletion(long timeoutMillis)
+  	throws InterruptedException
+  {
+   final long deadline = System.currentTimeMillis() + timeoutMillis;
+   for (long left = timeoutMillis; !done && 0 < left;
+   	left = deadline - System.currentTimeMillis())
+    wait(left);
+   return best;
+  }
+
+  /**
+   * Stops the search soon. The best solution found so far
+   * remains available.
+   */
+  public void cancel()
+  {
+   stop.set(true);
+   if (null != future)
+    future.cancel(false);
+  }
+
+  public void run()
+  {
+   final long started = System.nanoTime();
+   try
+   {
+    checkSolvable(start);
+    long nodeCount = 0L;
+    int lowerBound = -1, limit = null == best ? Integer.MAX_VALUE : best.getLength();
+    for (int phase = 0; weights.length > phase && !stop.get(); phase++)
+    {
+     DepthFirstSearch search = new DepthFirstSearch(heuristic, start);
+     search.setStopFlag(stop);
+     search.setWeight((int)Math.round(weights[phase] * WEIGHT_SCALE), WEIGHT_SCALE);
+     search.setLengthLimit(limit);
+     if (0 > lowerBound)
+      lowerBound = search.getEstimate();
+     int result;
+     for (int bound = search.getCost();; bound = result)
+     {
+      result = search.search(bound);
+      if (DepthFirstSearch.FOUND == result || DepthFirstSearch.STOPPED == result
+        || DepthFirstSearch.EXHAUSTED == result)
+       break;
+     }
+     nodeCount += search.getNodeCount();
+     final boolean last = weights.length - 1 == phase;
+     if (DepthFirstSearch.FOUND == result)
+     {
+      final Move[] moves = search.getPath();
+      limit = moves.length;
+      final double bound = last ? 1. : Math.max(1., Math.min(weights[phase],
+        0 == lowerBound ? 1. : (double)moves.length / lowerBound));
+      publish(new Solution(start, moves, nodeCount, System.nanoTime() - started, bound));
+     }
+     else if (DepthFirstSearch.EXHAUSTED == result && last && null != best)
+      // nothing shorter than the best solution exists
+      publish(new Solution(start, best.getMoves().toArray(new Move[limit]),
+        nodeCount, System.nanoTime() - started, 1.));
+    }
+   }
+   finally
+   {
+    synchronized (this)
+    {
+     done = true;
+     notifyAll();
+    }
+   }
+  }
+
+  private void publish(Solution solution)
+  {
+   synchronized (this)
+   {
+    best = solution;
+    notifyAll();
+   }
+   if (null != listener)
+    listener.solutionFound(solution);
+  }
+
+  Task(BoardState start, List<Move> incumbent, SolutionListener listener)
+  {
+   this.start = start;
+   this.listener = listener;
+   if (null != incumbent)
+   {
+    BoardState position = start;
+    for (Move move : incumbent)
+     position = position.move(move);
+    if (!position.isSolved())
+     throw new IllegalArgumentException("Moves " + incumbent + " do not solve " + start);
+    final Move[] moves = incumbent.toArray(new Move[incumbent.size()]);
+    final int estimate = new DepthFirstSearch(heuristic, start).getEstimate();
+    this.best = new Solution(start, moves, 0L, 0L,
+      0 == estimate ? 1. : Math.max(1., (double)moves.length / estimate));
+   }
+  }
+
+  private final BoardState start;
+  private final SolutionListener listener;
+  private final AtomicBoolean stop = new AtomicBoolean();
+  private volatile Solution best;
+  private volatile boolean done;
+  private volatile Future<?> future;
+ }
+
+ private static final int WEIGHT_SCALE = 16;
+ private static final double[] DEFAULT_WEIGHTS = { 8., 3., 2., 1.5, 1.25, 1. };
+
+ private final Heuristic heuristic;
+ private final double[] weights;
+}
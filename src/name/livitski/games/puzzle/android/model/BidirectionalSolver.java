@@ -0,0 +1,414 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds optimal solutions by searching from the start and the solved
+ * positions at once until the two searches meet in the middle.
+ * The searches expand nodes in the order of <code>max(f, 2g)</code>,
+ * which guarantees that neither of them goes past the midpoint of an
+ * optimal solution. The backward search is guided by Manhattan distance
+ * with linear conflicts to the start position.
+ * Both searches keep the positions they reach in memory. When their
+ * estimated footprint exceeds a limit, the solver drops them and
+ * continues with iterative-deepening A*, starting from the lower bound
+ * on the solution length proven by then.
+ * For the explanation of this algorithm, please refer to:
+ * Robert C. Holte, Ariel Felner, Guni Sharon, Nathan R. Sturtevant,
+ * Bidirectional search that is guaranteed to meet in the middle,
+ * AAAI Conference on Artificial Intelligence (2016), 3411-3417.
+ * @see IDAStarSolver
+ */
+public class BidirectionalSolver extends Solver
+{
+ /**
+  * Returns the heuristic that guides the forward search and
+  * the fallback to iterative-deepening A*.
+  */
+ public Heuristic getHeuristic()
+ {
+  return heuristic;
+ }
+
+ /**
+  * Returns the limit on memory used by both searches, in bytes.
+  */
+ public long getMemoryLimit()
+ {
+  return memoryLimit;
+ }
+
+ /**
+  * Returns the number of solutions this solver has completed with
+  * iterative-deepening A* after reaching the memory limit.
+  */
+ public long getFallbackCount()
+ {
+  return fallbackCount.get();
+ }
+
+ @Override
+ public Solution solve(BoardState start)
+ {
+  checkSolvable(start);
+  if (heuristic.getSize() != start.getSize())
+   throw new IllegalArgumentException(heuristic + " cannot evaluate " + start);
+  final long started = System.nanoTime();
+  Search search = new Search(start);
+  if (search.run(memoryLimit / NODE_BYTES))
+   return new Solution(start, search.getPath(), search.nodeCount,
+     System.nanoTime() - started);
+  final long nodeCount = search.nodeCount;
+  int bound = search.lowerBound;
+  search = null;
+  fallbackCount.incrementAndGet();
+  DepthFirstSearch fallback = new DepthFirstSearch(heuristic, start);
+  for (bound = Math.max(bound, fallback.getEstimate());;)
+  {
+   bound = fallback.search(bound);
+   if (DepthFirstSearch.FOUND == bound)
+    break;
+   if (DepthFirstSearch.EXHAUSTED == bound)
+    throw new IllegalStateException("Search space exhausted for " + start);
+  }
+  return new Solution(start, fallback.getPath(), nodeCount + fallback.getNodeCount(),
+    System.nanoTime() - started);
+ }
+
+ /**
+  * Creates a solver with a specific memory limit.
+  * @param heuristic an admissible heuristic for the boards
+  * this solver will handle
+  * @param memoryLimit approximate number of bytes the searches
+  * may use before the solver falls back to iterative-deepening A*
+  */
+ public BidirectionalSolver(Heuristic heuristic, long memoryLimit)
+ {
+  if (NODE_BYTES > memoryLimit)
+   throw new IllegalArgumentException("Memory limit of " + memoryLimit
+     + " bytes is too low");
+  this.heuristic = heuristic;
+  this.memoryLimit = memoryLimit;
+ }
+
+ /**
+  * Creates a solver with the {@link #DEFAULT_MEMORY_LIMIT default}
+  * memory limit.
+  * @param heuristic an admissible heuristic for the boards
+  * this solver will handle
+  */
+ public BidirectionalSolver(Heuristic heuristic)
+ {
+  this(heuristic, DEFAULT_MEMORY_LIMIT);
+ }
+
+ /**
+  * Creates a solver for boards of specific size guided by
+  * {@link ManhattanDistance Manhattan distance} with linear
+  * conflicts.
+  * @param size the number of rows (and columns) on the board
+  */
+ public BidirectionalSolver(int size)
+ {
+  this(new ManhattanDistance(size, true));
+ }
+
+ /**
+  * Memory limit of solvers that do not set their own, in bytes.
+  */
+ public static final long DEFAULT_MEMORY_LIMIT = 64L << 20;
+
+ /**
+  * Estimated memory footprint of a node kept by the searches,
+  * in bytes, which accounts for the node, its position, and
+  * entries in the hash map and the priority queue.
+  */
+ public static final int NODE_BYTES = 160;
+
+ /**
+  * Position reached by one of the searches.
+  */
+ private static final class Node implements Comparable<Node>
+ {
+  public int compareTo(Node other)
+  {
+   if (priority != other.priority)
+    return priority < other.priority ? -1 : 1;
+   // among equals, prefer nodes farther from the origin
+   return other.cost - cost;
+  }
+
+  Node(BoardState state, Node parent, Move move, int cost, int estimate)
+  {
+   this.state = state;
+   this.parent = parent;
+   this.move = move;
+   this.cost = cost;
+   this.estimate = estimate;
+   this.priority = Math.max(cost + estimate, 2 * cost);
+  }
+
+  final BoardState state;
+  final Node parent;
+  /** The move that led to this node from its parent. */
+  final Move move;
+  final int cost, estimate, priority;
+  boolean open = true;
+ }
+
+ /**
+  * Runs both searches on a position until they meet, or their nodes
+  * exceed a limit.
+  */
+ private final class Search
+ {
+  /**
+   * Expands nodes until the shortest path between the origins is found.
+   * @return whether the path has been found, otherwise the number of
+   * nodes kept has exceeded the limit and {@link #lowerBound} holds
+   * the lower bound on the length of the path
+   */
+  boolean run(long nodeLimit)
+  {
+   if (forward.origin.equals(backward.origin))
+    return true;
+   for (;;)
+   {
+    final int forwardPriority = forward.priority();
+    final int backwardPriority = backward.priority();
+    if (forward.isEmpty() || backward.isEmpty())
+     // one side has seen every position, and with it all meeting points
+     lowerBound = Integer.MAX_VALUE;
+    else
+     lowerBound = Math.max(Math.min(forwardPriority, backwardPriority),
+       Math.max(Math.max(forward.minLength(), backward.minLength()),
+         forward.minCost() + backward.minCost() + 1));
+    if (length <= lowerBound)
+     break;
+    if (nodeLimit < forward.nodes.size() + backward.nodes.size())
+     return false;
+    if (forwardPriority <= backwardPriority)
+     forward.expand(backward);
+    else
+     backward.expand(forward);
+   }
+   if (null == meetForward)
+    throw new IllegalStateException("Search space exhausted for " + forward.origin);
+   return true;
+  }
+
+  /**
+   * Returns the moves on the path found between the origins.
+   */
+  Move[] getPath()
+  {
+   if (null == meetForward)
+    return new Move[0];
+   Move[] path = new Move[length];
+   int i = meetForward.cost;
+   for (Node node = meetForward; null != node.parent; node = node.parent)
+    path[--i] = node.move;
+   i = meetForward.cost;
+   for (Node node = meetBackward; null != node.parent; node = node.parent)
+    path[i++] = node.move.opposite();
+   return path;
+  }
+
+  Search(BoardState start)
+  {
+   final int size = start.getSize();
+   this.neighbors = DepthFirstSearch.neighbors(size);
+   this.forward = new Frontier(heuristic, start);
+   this.backward = new Frontier(
+     new ManhattanDistance(size, start.toArray(), true), BoardState.solved(size));
+  }
+
+  long nodeCount;
+  int lowerBound;
+
+  /**
+   * Nodes kept by a search from one of the origins.
+   */
+  private final class Frontier
+  {
+   boolean isEmpty()
+   {
+    skipClosed();
+    return queue.isEmpty();
+   }
+
+   /**
+    * Returns the lowest priority of open nodes, or
+    * {@link Integer#MAX_VALUE} if there are none.
+    */
+   int priority()
+   {
+    skipClosed();
+    return queue.isEmpty() ? Integer.MAX_VALUE : queue.peek().priority;
+   }
+
+   int minCost()
+   {
+    return min(costCounts);
+   }
+
+   int minLength()
+   {
+    return min(lengthCounts);
+   }
+
+   /**
+    * Expands the open node with the lowest priority and updates
+    * the shortest path when its children are known to the
+    * opposite search.
+    */
+   void expand(Frontier opposite)
+   {
+    skipClosed();
+    final Node node = queue.poll();
+    close(node);
+    nodeCount++;
+    final int tileCount = cells.length;
+    node.state.toArray(cells);
+    for (int i = 0; tileCount > i; i++)
+     places[cells[i]] = i;
+    final int blank = places[0];
+    final Move reverse = null == node.parent ? null : node.move.opposite();
+    for (Move move : Move.values())
+    {
+     final int from = neighbors[blank << 2 | move.ordinal()];
+     if (0 > from || move == reverse)
+      continue;
+     final BoardState state = node.state.move(move);
+     final int cost = node.cost + 1;
+     final Node known = nodes.get(state);
+     if (null != known && known.cost <= cost)
+      continue;
+     final int tile = cells[from];
+     cells[blank] = tile;
+     cells[from] = 0;
+     places[tile] = blank;
+     places[0] = from;
+     final int estimate = heuristic.adjust(node.estimate, cells, places, tile, from, blank);
+     cells[from] = tile;
+     cells[blank] = 0;
+     places[tile] = from;
+     places[0] = blank;
+     if (null != known && known.open)
+      close(known);
+     final Node child = new Node(state, node, move, cost, estimate);
+     nodes.put(state, child);
+     open(child);
+     final Node met = opposite.nodes.get(state);
+     if (null != met && length > cost + met.cost)
+     {
+      length = cost + met.cost;
+      meetForward = this == forward ? child : met;
+      meetBackward = this == forward ? met : child;
+     }
+    }
+   }
+
+   private void open(Node node)
+   {
+    queue.add(node);
+    final int length = node.cost + node.estimate;
+    if (lengthCounts.length <= length)
+    {
+     costCounts = grow(costCounts, length);
+     lengthCounts = grow(lengthCounts, length);
+    }
+    costCounts[node.cost]++;
+    lengthCounts[length]++;
+   }
+
+   private void close(Node node)
+   {
+    node.open = false;
+    costCounts[node.cost]--;
+    lengthCounts[node.cost + node.estimate]--;
+   }
+
+   /** Drops nodes that have been closed or superseded from the queue's head. */
+   private void skipClosed()
+   {
+    while (!queue.isEmpty() && !queue.peek().open)
+     queue.poll();
+   }
+
+   private int[] grow(int[] counts, int value)
+   {
+    int[] longer = new int[Math.max(2 * counts.length, value + 1)];
+    System.arraycopy(counts, 0, longer, 0, counts.length);
+    return longer;
+   }
+
+   private int min(int[] counts)
+   {
+    for (int value = 0; counts.length > value; value++)
+     if (0 < counts[value])
+      return value;
+    return Integer.MAX_VALUE;
+   }
+
+   Frontier(Heuristic heuristic, BoardState origin)
+   {
+    final int tileCount = origin.getTileCount();
+    this.heuristic = heuristic;
+    this.origin = origin;
+    this.cells = origin.toArray();
+    this.places = new int[tileCount];
+    for (int i = 0; tileCount > i; i++)
+     places[cells[i]] = i;
+    final Node root = new Node(origin, null, null, 0, heuristic.evaluate(cells, places));
+    nodes.put(origin, root);
+    open(root);
+   }
+
+   final BoardState origin;
+   final Map<BoardState, Node> nodes = new HashMap<BoardState, Node>();
+   private final Heuristic heuristic;
+   private final PriorityQueue<Node> queue = new PriorityQueue<Node>();
+   /**
+    * Numbers of open nodes by their cost and by their estimated length
+    * of the path through them, which is never less than the cost.
+    */
+   private int[] costCounts = new int[64], lengthCounts = new int[64];
+   private final int[] cells, places;
+  }
+
+  private final int[] neighbors;
+  private final Frontier forward, backward;
+  private Node meetForward, meetBackward;
+  private int length = Integer.MAX_VALUE;
+ }
+
+ private final Heuristic heuristic;
+ private final long memoryLimit;
+ private final AtomicLong fallbackCount = new AtomicLong();
+}
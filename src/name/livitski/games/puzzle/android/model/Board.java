@@ -22,27 +22,42 @@
  */
 package name.livitski.games.puzzle.android.model;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.Set;
-import java.util.SortedMap;
 import java.util.StringTokenizer;
-import java.util.TreeMap;
 
 /**
- * Represents an n-Puzzle gaming board.
+ * Represents an n-Puzzle gaming board of M rows and N columns.
+ * Positions are kept as tile numbers in a flat array, so that
+ * moves take constant time and large boards take little memory.
+ * {@link Tile} objects are created when first asked for, such as
+ * by the user interface, and follow the positions from then on.
  */
 public class Board
 {
  /**
-  * Returns this board's {@link #Board(int) size}.
+  * Returns this board's {@link #Board(int) size}, the number of rows
+  * and columns on a square board.
+  * @throws IllegalStateException if the board is not square
   */
  public int getSize()
  {
-  return layout.length;
+  if (rows != columns)
+   throw new IllegalStateException("Board of " + rows + "x" + columns
+     + " cells is not square");
+  return rows;
+ }
+
+ /** Returns the number of rows on this board. */
+ public int getRowCount()
+ {
+  return rows;
+ }
+
+ /** Returns the number of columns on this board. */
+ public int getColumnCount()
+ {
+  return columns;
  }
 
  /**
@@ -51,7 +66,7 @@ public class Board
   */
  public int getTileCount()
  {
-  return tiles.length;
+  return cells.length;
  }
 
  /**
@@ -60,13 +75,53 @@ public class Board
   */
  public int getScore()
  {
-  int score = 0;
-  for (Tile tile : tiles)
-   if (tile.isOnTarget())
-    score++;
   return score;
  }
 
+ /**
+  * Returns the sum of distances, in rows and columns, of tiles other
+  * than the blank from their target places. The distance is tracked
+  * as moves are made, so this method takes constant time unless
+  * tiles have been rearranged otherwise.
+  * @throws IllegalStateException if the board is empty
+  */
+ public int getManhattanDistance()
+ {
+  checkNotEmpty("measure distance");
+  if (0 > distance)
+   evaluate();
+  return distance;
+ }
+
+ /**
+  * Returns the number of tiles that have to leave their target rows
+  * or columns to let other tiles in the same line pass. Each of them
+  * adds two moves to the {@link #getManhattanDistance() distance}.
+  * Linear conflicts are counted on square boards of up to
+  * {@link ManhattanDistance#MAX_CONFLICT_SIZE} rows, and are deemed
+  * absent on other boards. The count is tracked as moves are made.
+  * @throws IllegalStateException if the board is empty
+  */
+ public int getLinearConflicts()
+ {
+  checkNotEmpty("count conflicts");
+  if (0 > distance)
+   evaluate();
+  return conflicts;
+ }
+
+ /**
+  * Returns the lower bound of the number of moves needed to solve
+  * the puzzle, which accounts for the
+  * {@link #getManhattanDistance() distance} and
+  * {@link #getLinearConflicts() linear conflicts} of tiles.
+  * @throws IllegalStateException if the board is empty
+  */
+ public int getMinimumMovesLeft()
+ {
+  return getManhattanDistance() + 2 * getLinearConflicts();
+ }
+
  /**
   * Returns the tile at a specific location.
   * @throws IllegalStateException if the board is empty
@@ -74,14 +129,12 @@ public class Board
   */
  public Tile getTileAt(int row, int col)
  {
-  if (0 > row || layout.length <= row)
+  if (0 > row || rows <= row)
    throw new IllegalArgumentException("Invalid row index " + row);
-  if (0 > col || layout.length <= col)
+  if (0 > col || columns <= col)
    throw new IllegalArgumentException("Invalid column index " + col);
-  Tile tile = layout[row][col];
-  if (null == tile)
-   throw new IllegalStateException("Cannot point at a tile: the board is empty");
-  return tile;
+  checkNotEmpty("point at a tile");
+  return tiles()[cells[row * columns + col]];
  }
 
  /**
@@ -93,14 +146,56 @@ public class Board
   */
  public String getTileLayout()
  {
+  checkNotEmpty("list tiles");
   StringBuilder buffer = new StringBuilder(3 * getTileCount());
-  final int size = getSize();
-  for (int i = 0; i < size; i++)
-   for (int j = 0; j < size; j++)
-    buffer.append(',').append(getTileAt(i, j).getNumber());
+  for (int number : cells)
+   buffer.append(',').append(number);
   return 0 == buffer.length() ? "" : buffer.substring(1);
  }
 
+ /**
+  * Returns a compact immutable copy of current tile positions
+  * on this board.
+  * @throws IllegalStateException if the board is empty
+  * @throws IllegalArgumentException if this board is not square or
+  * too large to be represented by a {@link BoardState}
+  */
+ public BoardState getState()
+ {
+  if (rows != columns || BoardState.MAX_SIZE < rows)
+   throw new IllegalArgumentException("Board of " + rows + "x" + columns
+     + " cells cannot be represented by a compact state");
+  checkNotEmpty("copy its state");
+  return BoardState.pack(rows, cells);
+ }
+
+ /**
+  * Returns the snapshot of tile positions published after the latest
+  * change to this board. Unlike other methods of this class, may be
+  * called from any thread.
+  * @return the latest snapshot, or <code>null</code> if this board
+  * does not {@link #setPublishingSnapshots(boolean) publish snapshots}
+  * or is empty
+  */
+ public BoardSnapshot getSnapshot()
+ {
+  return snapshot;
+ }
+
+ /**
+  * Makes this board publish an immutable {@link #getSnapshot() snapshot}
+  * of tile positions after each change, starting with the current
+  * positions. Publishing copies the positions on every move, so boards
+  * do not publish snapshots unless asked to. Must be called by the thread
+  * that changes the board.
+  */
+ public void setPublishingSnapshots(boolean publishing)
+ {
+  this.publishing = publishing;
+  this.snapshot = publishing && 0 <= places[0]
+    ? new BoardSnapshot(version, rows, columns, cells.clone()) : null;
+ }
+
  /**
   * Returns the move of a blank field that will swap it
   * with this tile according to the rules. Returns
@@ -112,10 +207,11 @@ public class Board
  public Move permittedMoveFor(final Tile tile)
  {
   final int number = tile.getNumber();
-  if (0 > number || tiles.length <= number || tile != tiles[number])
+  if (0 > number || cells.length <= number || tile != tiles()[number])
    throw new IllegalArgumentException(tile.toString());
-  final int yoffset = tile.getRow() - blank.getRow();
-  final int xoffset = tile.getColumn() - blank.getColumn();
+  final int blank = places[0];
+  final int yoffset = tile.getRow() - blank / columns;
+  final int xoffset = tile.getColumn() - blank % columns;
   Move move = null;
   switch(xoffset)
   {
@@ -148,69 +244,97 @@ public class Board
   */
  public void move(Move direction)
  {
-  int row = blank.getRow();
-  int col = blank.getColumn();
-  if (0 > row || 0 > col)
-   throw new IllegalStateException("Cannot make a move: the board is empty");
+  checkNotEmpty("make a move");
+  final int to = places[0];
+  int row = to / columns;
+  int col = to % columns;
   if (direction.isHorizontal())
   {
    col += direction.getAmount();
-   if (0 > col || layout.length <= col)
+   if (0 > col || columns <= col)
     throw new IllegalArgumentException("Cannot make a " + direction + " to column " + col);
   }
   else if (direction.isVertical())
   {
    row += direction.getAmount();
-   if (0 > row || layout.length <= row)
+   if (0 > row || rows <= row)
     throw new IllegalArgumentException("Cannot make a " + direction + " to row " + row);
   }
   else
    throw new UnsupportedOperationException("Unimplemented " + direction);
-  Tile tile = layout[row][col];
-  swapTiles(tile, blank);
-  noitfyMoveListeners(blank, tile);
+  final int from = row * columns + col;
+  final int number = cells[from];
+  final int distance = this.distance;
+  placeTile(number, to);
+  placeTile(0, from);
+  if (0 <= distance)
+  {
+   this.distance = distance + distance(number, to) - distance(number, from);
+   if (null != heuristic)
+    this.conflicts = heuristic.adjustConflicts(conflicts, cells, number, from, to);
+  }
+  changed();
+  if (0 < listenerCount)
+   noitfyMoveListeners(tiles[0], tiles[number]);
+ }
+
+ /**
+  * Tells whether a move of the blank tile stays within the board.
+  * @throws IllegalStateException if the board is empty
+  */
+ public boolean isPermitted(Move direction)
+ {
+  checkNotEmpty("check a move");
+  final int target = direction.isHorizontal()
+    ? places[0] % columns + direction.getAmount()
+    : places[0] / columns + direction.getAmount();
+  return 0 <= target && (direction.isHorizontal() ? columns : rows) > target;
  }
 
  public void addMoveListener(MoveListener listener)
  {
-  listeners.add(listener);
+  // listeners receive tile objects
+  tiles();
+  if (listeners.length == listenerCount)
+  {
+   MoveListener[] grown = new MoveListener[listenerCount + 2];
+   System.arraycopy(listeners, 0, grown, 0, listenerCount);
+   listeners = grown;
+  }
+  listeners[listenerCount++] = listener;
  }
 
  public void addTileOnTargetListener(final TileOnTargetListener listener)
  {
-  for (Tile tile : tiles)
+  for (Tile tile : tiles())
    tile.addOnTargetListener(listener);
  }
 
  public void forEachTile(TileHandler handler)
  {
-  for (Tile tile : tiles)
+  for (Tile tile : tiles())
    handler.processTile(tile);
  }
 
  /**
-  * Places tiles on the board in the reverse order.
+  * Places tiles on the board in the reverse order, swapping tiles 1
+  * and 2 if needed to keep the puzzle solvable. Boards of a single
+  * row or column have no solvable arrangement of this kind.
   */
  protected void placeTilesReverse()
  {
-  int row, col;
-  row = col = 0;
-  final int size = getSize();
-  for (int i = getTileCount(); 0 < i--;)
+  final int tileCount = getTileCount();
+  for (int i = tileCount; 0 < i--;)
+   placeTile(i, tileCount - 1 - i);
+  // the blank tile ends up at its target place, so an odd permutation
+  // is made even by swapping tiles 1 and 2
+  if (2 < tileCount && 0 != computePermutationSign())
   {
-   Tile tile = tiles[i];
-   placeTile(tile, row, col);
-   if (size <= ++col)
-   {
-    row++;
-    col = 0;
-    assert size > row;
-   }
+   final int place1 = places[1];
+   placeTile(1, places[2]);
+   placeTile(2, place1);
   }
-  // For even board sizes, swap tiles 1 and 2
-  if (0 == layout.length % 2)
-   // We don't allow board size of 0, so if the size is even, there will always be tiles 1 and 2
-   swapTiles(tiles[1], tiles[2]);
+  changed();
  }
 
  /**
@@ -218,12 +342,9 @@ public class Board
   */
  protected void placeTilesOnTarget()
  {
-  forEachTile(new TileHandler() {
-   public void processTile(Tile tile)
-   {
-    placeTile(tile, tile.getTargetRow(), tile.getTargetColumn());
-   }
-  });
+  for (int i = 0, tileCount = getTileCount(); tileCount > i; i++)
+   placeTile(i, target(i));
+  changed();
  }
 
  /**
@@ -233,23 +354,40 @@ public class Board
  protected void placeTiles(String layout)
  {
   StringTokenizer numbers = new StringTokenizer(layout, ",");
-  final int size = getSize();
-  Set<Integer> placedTileNos = new HashSet<Integer>(getTileCount(), 1f); 
-  for (int i = 0, j = 0; numbers.hasMoreTokens();)
+  final int tileCount = getTileCount();
+  boolean[] placed = new boolean[tileCount];
+  int count = 0;
+  for (; numbers.hasMoreTokens(); count++)
   {
    int number = Integer.parseInt(numbers.nextToken().trim());
-   if (!placedTileNos.add(number))
+   if (0 > number || tileCount <= number)
+    throw new IllegalArgumentException("Invalid tile number " + number);
+   if (placed[number])
     throw new IllegalArgumentException("Tile " + number + " has already been placed");
-   placeTile(tiles[number], i, j);
-   if (size <= ++j)
-   {
-    j = 0;
-    ++i;
-   }
+   placed[number] = true;
+   placeTile(number, count);
   }
-  if (placedTileNos.size() < getTileCount())
+  if (count < tileCount)
    throw new IllegalArgumentException("Some tiles have not been placed, expected "
-     + getTileCount() + " tile(s), placed " + placedTileNos.size());
+     + tileCount + " tile(s), placed " + count);
+  changed();
+ }
+
+ /**
+  * Places tiles on the board according to a {@link #getState() state}
+  * of a board of the same size.
+  * @throws IllegalArgumentException if the state belongs to a board
+  * of different size
+  */
+ protected void placeTiles(BoardState state)
+ {
+  final int size = state.getSize();
+  if (rows != size || columns != size)
+   throw new IllegalArgumentException("Cannot place " + state
+     + " on a board of " + rows + "x" + columns + " cells");
+  for (int k = 0, tileCount = getTileCount(); tileCount > k; k++)
+   placeTile(state.get(k), k);
+  changed();
  }
 
  /**
@@ -257,28 +395,24 @@ public class Board
   */
  protected void placeTilesRandom()
  {
-  // obtain a random arrangement of tiles
-  Random random = new Random();
-  // assign each tile a different random key
-  SortedMap<Integer, Tile> randomOrder = new TreeMap<Integer, Tile>(); 
-  for (int i = getTileCount(); 0 < i--;)
-  {
-   Integer key;
-   do key = random.nextInt();
-   while (randomOrder.containsKey(key));
-   randomOrder.put(key, tiles[i]);
-  }
-  // place tiles on the board in order of their random keys
-  final int size = getSize();
-  Iterator<Tile> sequence = randomOrder.values().iterator();
-  for (int i = 0; i < size; i++)
-   for (int j = 0; j < size; j++)
-    placeTile(sequence.next(), i, j);
-  // check if this arrangement is solvable (Calabro, 2005)
-  int distanceMod2 = (blank.getRow() + blank.getColumn()) % 2;
-  if (computePermutationSign() != distanceMod2)
-   // if not, swap two non-blank tiles
-   swapTiles(tiles[1], tiles[2]);
+  if (null == random)
+   random = new SplitMixRandom();
+  placeTilesRandom(random);
+ }
+
+ /**
+  * Places tiles on the board in an order drawn from a specific
+  * source of randomness. The same order follows from the same
+  * state of that source, so a {@link SplitMixRandom seeded}
+  * source reproduces an arrangement.
+  */
+ protected void placeTilesRandom(Random random)
+ {
+  final int[] cells = ScrambleGenerator.shuffle(new int[getTileCount()],
+    rows, columns, random);
+  for (int k = 0; cells.length > k; k++)
+   placeTile(cells[k], k);
+  changed();
  }
 
  /**
@@ -290,17 +424,14 @@ public class Board
  protected int computePermutationSign()
  {
   final int tileCount = getTileCount();
-  final int size = getSize();
   // construct a permutation in a 1-based array
   int[] permutation = new int[tileCount + 1];
   int i = 1;
-  for (int row = 0; row < size; row++)
-   for (int col = 0; col < size; col++)
-   {
-    int number = layout[row][col].getNumber();
-    if (0 == number) number = tileCount;
-    permutation[i++] = number;
-   }
+  for (int number : cells)
+  {
+   if (0 == number) number = tileCount;
+   permutation[i++] = number;
+  }
   // run Calabro's algorithm over the permutation and return its result
   int s = 0;
   for (i = 1; tileCount >= i;)
@@ -318,36 +449,44 @@ public class Board
 
  protected void noitfyMoveListeners(Tile from, Tile to)
  {
-  for (MoveListener l : listeners)
-   l.tileMoved(from, to);
+  for (int i = 0; listenerCount > i; i++)
+   listeners[i].tileMoved(from, to);
  }
 
  protected void establishTarget(Tile tile)
  {
-  int number = tile.getNumber();
-  if (0 == number)
-   number = getTileCount();
-  number--;
-  final int edgeSize = getSize();
-  tile.target(number / edgeSize, number % edgeSize);
+  final int target = target(tile.getNumber());
+  tile.target(target / columns, target % columns);
  }
 
  /**
-  * Constructs an empty board of specified size and the associated
-  * set of tiles. Before starting a game, one must place tiles on the
-  * board.  
+  * Constructs an empty square board of specified size. Before starting
+  * a game, one must place tiles on the board.
   * @param edgeSize the number of rows (and columns) on the board
   */
  protected Board(int edgeSize)
  {
-  if (0 >= edgeSize || Integer.MAX_VALUE <= (long)edgeSize * edgeSize)
-   throw new IllegalArgumentException("edgeSize = " + edgeSize);
-  final int tileCount = edgeSize * edgeSize;
-  this.layout = new Tile[edgeSize][edgeSize];
-  this.tiles = new Tile[tileCount];
-  for (int i = 0; tileCount > i; i++)
-   establishTarget(tiles[i] = new Tile(i));
-  this.blank = tiles[0];
+  this(edgeSize, edgeSize);
+ }
+
+ /**
+  * Constructs an empty board with specified numbers of rows and
+  * columns. Before starting a game, one must place tiles on the
+  * board.
+  */
+ protected Board(int rows, int columns)
+ {
+  if (0 >= rows || 0 >= columns || Integer.MAX_VALUE <= (long)rows * columns)
+   throw new IllegalArgumentException("Unsupported board of " + rows
+     + "x" + columns + " cells");
+  final int tileCount = rows * columns;
+  this.rows = rows;
+  this.columns = columns;
+  this.cells = new int[tileCount];
+  this.places = new int[tileCount];
+  Arrays.fill(places, -1);
+  this.heuristic = rows == columns && ManhattanDistance.MAX_CONFLICT_SIZE >= rows
+    ? new ManhattanDistance(rows, true) : null;
  }
 
  protected interface TileHandler
@@ -355,22 +494,119 @@ public class Board
   void processTile(Tile tile);
  }
 
- private void swapTiles(Tile tile1, Tile tile2)
+ /**
+  * Returns a copy of tile numbers in the {@link #getTileLayout() layout order}.
+  * @throws IllegalStateException if the board is empty
+  */
+ int[] copyCells()
  {
-  int row1 = tile1.getRow();
-  int col1 = tile1.getColumn();
-  placeTile(tile1, tile2.getRow(), tile2.getColumn());
-  placeTile(tile2, row1, col1);
+  checkNotEmpty("copy its cells");
+  return cells.clone();
  }
 
- private void placeTile(Tile tile, int row, int col)
+ /**
+  * Puts a tile into a cell, which holds another tile until that one
+  * is placed too.
+  */
+ private void placeTile(int number, int place)
  {
-  tile.place(row, col);
-  layout[row][col] = tile;
+  final int target = target(number);
+  if (target == places[number])
+   score--;
+  if (target == place)
+   score++;
+  cells[place] = number;
+  places[number] = place;
+  if (null != tiles)
+   tiles[number].place(place / columns, place % columns);
+  // estimates are adjusted after a move, and recomputed when needed
+  // after other changes
+  distance = -1;
  }
 
- private final Tile[][] layout;
- private final Tile[] tiles;
- private final Tile blank;
- private final List<MoveListener> listeners = new ArrayList<MoveListener>();
+ /** Returns the target place of a tile in the layout order. */
+ private int target(int number)
+ {
+  return (0 == number ? cells.length : number) - 1;
+ }
+
+ /** Returns the distance of a non-blank tile in a place from its target. */
+ private int distance(int number, int place)
+ {
+  final int target = number - 1;
+  return Math.abs(place / columns - target / columns)
+    + Math.abs(place % columns - target % columns);
+ }
+
+ /**
+  * Returns tile objects by number, creating them at the tiles'
+  * current places on first use.
+  */
+ private Tile[] tiles()
+ {
+  if (null == tiles)
+  {
+   final int tileCount = cells.length;
+   Tile[] tiles = new Tile[tileCount];
+   for (int i = 0; tileCount > i; i++)
+   {
+    final Tile tile = tiles[i] = new Tile(i);
+    establishTarget(tile);
+    if (0 <= places[i])
+     tile.place(places[i] / columns, places[i] % columns);
+   }
+   this.tiles = tiles;
+  }
+  return tiles;
+ }
+
+ /**
+  * Counts a change of tile positions and publishes its snapshot
+  * if requested.
+  */
+ private void changed()
+ {
+  version++;
+  if (publishing)
+   snapshot = new BoardSnapshot(version, rows, columns, cells.clone());
+ }
+
+ private void evaluate()
+ {
+  int distance = 0;
+  for (int number = cells.length; 1 < number--;)
+   distance += distance(number, places[number]);
+  this.distance = distance;
+  conflicts = null == heuristic ? 0 : heuristic.conflicts(cells);
+ }
+
+ private void checkNotEmpty(String action)
+ {
+  if (0 > places[0])
+   throw new IllegalStateException("Cannot " + action + ": the board is empty");
+ }
+
+ private final int rows, columns;
+ /** Tile objects by number, or <code>null</code> until first asked for. */
+ private Tile[] tiles;
+ /** Tile numbers by position in the {@link #getTileLayout() layout order}. */
+ private final int[] cells;
+ /** Positions in the layout order by tile number, <code>-1</code> if not placed. */
+ private final int[] places;
+ /** Counts linear conflicts on small square boards, <code>null</code> on others. */
+ private final ManhattanDistance heuristic;
+ /** Number of tiles at their target places. */
+ private int score;
+ /** Manhattan distance, or <code>-1</code> if it has to be computed. */
+ private int distance = -1;
+ private int conflicts;
+ private Random random;
+ /** Number of changes of tile positions made on this board. */
+ private long version;
+ private boolean publishing;
+ private volatile BoardSnapshot snapshot;
+ private MoveListener[] listeners = NO_LISTENERS;
+ private int listenerCount;
+
+ private static final MoveListener[] NO_LISTENERS = {};
 }
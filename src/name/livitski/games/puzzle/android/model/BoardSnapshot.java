@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Immutable copy of tile positions on a {@link Board board} of any size,
+ * which the board {@link Board#setPublishingSnapshots(boolean) publishes}
+ * after each change. Threads other than the one playing on the board,
+ * such as solvers or autosave jobs, can read a consistent position
+ * from a snapshot without locks. Each snapshot carries the board's
+ * version, which grows with every change of tile positions, so that
+ * readers can tell whether the board has changed since an earlier
+ * snapshot.
+ */
+public final class BoardSnapshot
+{
+ /**
+  * Returns the number of changes of tile positions made on the board
+  * before this snapshot was taken.
+  */
+ public long getVersion()
+ {
+  return version;
+ }
+
+ /**
+  * Returns the number of rows and columns on a square board.
+  * @throws IllegalStateException if the board is not square
+  */
+ public int getSize()
+ {
+  if (rows != columns)
+   throw new IllegalStateException("Board of " + rows + "x" + columns
+     + " cells is not square");
+  return rows;
+ }
+
+ /** Returns the number of rows on the board. */
+ public int getRowCount()
+ {
+  return rows;
+ }
+
+ /** Returns the number of columns on the board. */
+ public int getColumnCount()
+ {
+  return columns;
+ }
+
+ /** Returns the number of tiles, including the blank tile. */
+ public int getTileCount()
+ {
+  return cells.length;
+ }
+
+ /**
+  * Returns the number of the tile at a position in the
+  * {@link Board#getTileLayout() layout order}.
+  * @throws ArrayIndexOutOfBoundsException if the position
+  * is not on the board
+  */
+ public int get(int position)
+ {
+  return cells[position];
+ }
+
+ /**
+  * Copies tile numbers in the {@link Board#getTileLayout() layout order}
+  * into an array.
+  * @param cells the array that receives the numbers, or <code>null</code>
+  * to allocate one
+  * @return the array with the numbers
+  * @throws IllegalArgumentException if the array is too short
+  */
+ public int[] toArray(int[] cells)
+ {
+  final int tileCount = this.cells.length;
+  if (null == cells)
+   cells = new int[tileCount];
+  else if (tileCount > cells.length)
+   throw new IllegalArgumentException("Array of " + cells.length
+     + " element(s) cannot hold " + tileCount + " tile numbers");
+  System.arraycopy(this.cells, 0, cells, 0, tileCount);
+  return cells;
+ }
+
+ /**
+  * Returns the compact state of this position.
+  * @throws IllegalArgumentException if the board is not square or
+  * too large to be represented by a {@link BoardState}
+  */
+ public BoardState toState()
+ {
+  if (rows != columns || BoardState.MAX_SIZE < rows)
+   throw new IllegalArgumentException("Board of " + rows + "x" + columns
+     + " cells cannot be represented by a compact state");
+  return BoardState.pack(rows, cells);
+ }
+
+ /** Tells whether the puzzle is solved in this position. */
+ public boolean isSolved()
+ {
+  final int last = cells.length - 1;
+  for (int i = 0; last > i; i++)
+   if (i + 1 != cells[i])
+    return false;
+  return true;
+ }
+
+ /**
+  * Returns a string of tile numbers for all board positions in the
+  * same format as {@link Board#getTileLayout()}.
+  */
+ public String getTileLayout()
+ {
+  StringBuilder buffer = new StringBuilder(3 * cells.length);
+  for (int number : cells)
+   buffer.append(',').append(number);
+  return buffer.substring(1);
+ }
+
+ /** Describes this snapshot for debugging purposes. */
+ @Override
+ public String toString()
+ {
+  return "Board snapshot " + version + " [" + getTileLayout() + ']';
+ }
+
+ /**
+  * Creates a snapshot that takes ownership of an array, which
+  * must not be changed afterwards.
+  */
+ BoardSnapshot(long version, int rows, int columns, int[] cells)
+ {
+  this.version = version;
+  this.rows = rows;
+  this.columns = columns;
+  this.cells = cells;
+ }
+
+ private final long version;
+ private final int rows, columns;
+ private final int[] cells;
+}
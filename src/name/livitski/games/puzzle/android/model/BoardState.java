@@ -0,0 +1,438 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.StringTokenizer;
+
+/**
+ * Immutable, compact representation of tile positions on a
+ * {@link Board board} of up to 5x5 cells. Tile numbers are packed
+ * into a 128-bit value, one field per cell in the
+ * {@link Board#getTileLayout() layout order}: 4 bits per cell for
+ * boards of up to 4x4 cells, which fits into the lower 64 bits,
+ * or 5 bits per cell for 5x5 boards. Equality tests and hash codes
+ * take constant time, and {@link #move(Move) moves} are applied
+ * with shifts and masks.
+ */
+public final class BoardState
+{
+ /**
+  * Returns the state of a solved puzzle on a board of a
+  * specific size.
+  * @param size the number of rows (and columns) on the board
+  * @throws IllegalArgumentException if the board size is not supported
+  */
+ public static BoardState solved(int size)
+ {
+  checkSize(size);
+  return SOLVED[size];
+ }
+
+ /**
+  * Creates a state from tile numbers in all board positions.
+  * @param size the number of rows (and columns) on the board
+  * @param cells tile numbers in the {@link Board#getTileLayout() layout order},
+  * with <code>0</code> denoting the blank tile
+  * @throws IllegalArgumentException if the board size is not supported or
+  * the numbers do not form a valid arrangement of tiles
+  */
+ public static BoardState valueOf(int size, int[] cells)
+ {
+  checkSize(size);
+  final int tileCount = size * size;
+  if (cells.length != tileCount)
+   throw new IllegalArgumentException("Expected " + tileCount
+     + " tile(s), got " + cells.length);
+  int placed = 0;
+  for (int number : cells)
+  {
+   if (0 > number || tileCount <= number)
+    throw new IllegalArgumentException("Invalid tile number " + number);
+   if (0 != (placed & 1 << number))
+    throw new IllegalArgumentException("Tile " + number + " has already been placed");
+   placed |= 1 << number;
+  }
+  return pack(size, cells);
+ }
+
+ /**
+  * Creates a state from a {@link Board#getTileLayout() layout string}.
+  * The board size is inferred from the number of tiles in the string.
+  * @throws IllegalArgumentException if the string does not describe
+  * a valid arrangement of tiles on a supported board
+  */
+ public static BoardState valueOf(String layout)
+ {
+  StringTokenizer numbers = new StringTokenizer(layout, ",");
+  final int tileCount = numbers.countTokens();
+  int size = 1;
+  while (size * size < tileCount)
+   size++;
+  if (size * size != tileCount)
+   throw new IllegalArgumentException("Layout \"" + layout
+     + "\" does not describe a square board");
+  checkSize(size);
+  int[] cells = new int[tileCount];
+  for (int i = 0; numbers.hasMoreTokens(); i++)
+   cells[i] = Integer.parseInt(numbers.nextToken().trim());
+  return valueOf(size, cells);
+ }
+
+ /**
+  * Creates a solvable state from its {@link #getIndex() index}.
+  * @param size the number of rows (and columns) on the board,
+  * up to 4
+  * @param index the index of the state
+  * @throws IllegalArgumentException if the board size is not supported
+  * or the index is out of range
+  */
+ public static BoardState valueOf(int size, long index)
+ {
+  checkSize(size);
+  if (0L > index || Permutations.solvableCount(size) <= index)
+   throw new IllegalArgumentException("Invalid index " + index
+     + " of a state on a board of size " + size);
+  final int tileCount = size * size;
+  int[] places = Permutations.solvablePlaces(index, size, new int[tileCount]);
+  int[] cells = new int[tileCount];
+  for (int i = 0; tileCount > i; i++)
+   cells[places[i]] = i;
+  return pack(size, cells);
+ }
+
+ /** Returns the number of rows (and columns) on the board. */
+ public int getSize()
+ {
+  return size;
+ }
+
+ /** Returns the number of tiles, including the blank tile. */
+ public int getTileCount()
+ {
+  return size * size;
+ }
+
+ /**
+  * Returns the position of the blank tile in the
+  * {@link Board#getTileLayout() layout order}.
+  */
+ public int getBlankIndex()
+ {
+  return blank;
+ }
+
+ /**
+  * Returns the number of a tile at a position in the
+  * {@link Board#getTileLayout() layout order}.
+  * @throws IndexOutOfBoundsException if the position is invalid
+  */
+ public int getTileAt(int index)
+ {
+  if (0 > index || size * size <= index)
+   throw new IndexOutOfBoundsException("Invalid position " + index);
+  return get(index);
+ }
+
+ /**
+  * Returns the number of a tile at a specific location.
+  * @throws IllegalArgumentException if the location is invalid
+  */
+ public int getTileAt(int row, int col)
+ {
+  if (0 > row || size <= row)
+   throw new IllegalArgumentException("Invalid row index " + row);
+  if (0 > col || size <= col)
+   throw new IllegalArgumentException("Invalid column index " + col);
+  return get(row * size + col);
+ }
+
+ /**
+  * Copies tile numbers for all board positions into an array.
+  * @param cells the array that receives tile numbers in the
+  * {@link Board#getTileLayout() layout order}
+  * @return the <code>cells</code> argument
+  * @throws IllegalArgumentException if the array is too short
+  */
+ public int[] toArray(int[] cells)
+ {
+  final int tileCount = size * size;
+  if (cells.length < tileCount)
+   throw new IllegalArgumentException("Array of " + cells.length
+     + " element(s) cannot hold " + tileCount + " tiles");
+  for (int i = 0; tileCount > i; i++)
+   cells[i] = get(i);
+  return cells;
+ }
+
+ /**
+  * Returns tile numbers for all board positions in the
+  * {@link Board#getTileLayout() layout order}.
+  */
+ public int[] toArray()
+ {
+  return toArray(new int[size * size]);
+ }
+
+ /**
+  * Tells whether a move of the blank tile stays within the board.
+  */
+ public boolean isPermitted(Move direction)
+ {
+  return 0 <= target(direction);
+ }
+
+ /**
+  * Returns the state that follows a move of the blank tile
+  * in specific direction.
+  * @throws IllegalArgumentException if requested move would push
+  * the blank tile outside the board
+  */
+ public BoardState move(Move direction)
+ {
+  final int target = target(direction);
+  if (0 > target)
+   throw new IllegalArgumentException("Cannot make a " + direction
+     + " from position " + blank);
+  final int number = get(target);
+  // the blank field holds zero, so only the target field has to be cleared
+  final int bits = bits(size);
+  long low = this.low, high = this.high;
+  int offset = target * bits;
+  if (64 <= offset)
+   high &= ~(FIELD_MASKS[bits] << offset - 64);
+  else
+  {
+   low &= ~(FIELD_MASKS[bits] << offset);
+   if (64 < offset + bits)
+    high &= ~(FIELD_MASKS[bits] >>> 64 - offset);
+  }
+  offset = blank * bits;
+  if (64 <= offset)
+   high |= (long)number << offset - 64;
+  else
+  {
+   low |= (long)number << offset;
+   if (64 < offset + bits)
+    high |= (long)number >>> 64 - offset;
+  }
+  return new BoardState(size, target, low, high);
+ }
+
+ /**
+  * Tells whether the puzzle can be solved from this state.
+  * For the explanation of this algorithm, please refer to:
+  * Chris Calabro, Solving the 15-Puzzle, June 14, 2005.
+  * @see Board#computePermutationSign()
+  */
+ public boolean isSolvable()
+ {
+  final int tileCount = size * size;
+  // construct a permutation in a 1-based array
+  int[] permutation = new int[tileCount + 1];
+  for (int i = 0; tileCount > i; i++)
+  {
+   int number = get(i);
+   permutation[i + 1] = 0 == number ? tileCount : number;
+  }
+  int s = 0;
+  for (int i = 1; tileCount >= i;)
+   if (i != permutation[i])
+   {
+    int temp = permutation[i];
+    permutation[i] = permutation[temp];
+    permutation[temp] = temp;
+    s = 1 - s;
+   }
+   else
+    i++;
+  return s == (blank / size + blank % size) % 2;
+ }
+
+ /**
+  * Returns the dense index of this state among solvable states on
+  * the board, which is that of the solvable state with the last two
+  * tiles swapped if this one is not solvable.
+  * @throws IllegalStateException if the board is larger than 4x4,
+  * so that indices do not fit into a <code>long</code>
+  * @see Permutations#solvableIndex(int[], int)
+  */
+ public long getIndex()
+ {
+  if (4 < size)
+   throw new IllegalStateException("States on a board of size " + size
+     + " cannot be indexed");
+  final int tileCount = size * size;
+  int[] places = new int[tileCount];
+  for (int i = 0; tileCount > i; i++)
+   places[get(i)] = i;
+  return Permutations.solvableIndex(places, size);
+ }
+
+ /** Tells whether this state represents a solved puzzle. */
+ public boolean isSolved()
+ {
+  return equals(SOLVED[size]);
+ }
+
+ /**
+  * Returns a string of tile numbers for all board positions in the
+  * same format as {@link Board#getTileLayout()}.
+  */
+ public String getTileLayout()
+ {
+  final int tileCount = size * size;
+  StringBuilder buffer = new StringBuilder(3 * tileCount);
+  for (int i = 0; tileCount > i; i++)
+  {
+   if (0 < i)
+    buffer.append(',');
+   buffer.append(get(i));
+  }
+  return buffer.toString();
+ }
+
+ @Override
+ public int hashCode()
+ {
+  long hash = low * 0x9E3779B97F4A7C15L + high;
+  return (int)(hash ^ hash >>> 32);
+ }
+
+ @Override
+ public boolean equals(Object obj)
+ {
+  if (this == obj)
+   return true;
+  if (!(obj instanceof BoardState))
+   return false;
+  BoardState other = (BoardState)obj;
+  return low == other.low && high == other.high && size == other.size;
+ }
+
+ /** Describes this state for debugging purposes. */
+ @Override
+ public String toString()
+ {
+  return "Board state [" + getTileLayout() + ']';
+ }
+
+ /**
+  * Largest board size supported by this class.
+  */
+ public static final int MAX_SIZE = 5;
+
+ /**
+  * Packs a valid arrangement of tiles without checking it.
+  */
+ static BoardState pack(int size, int[] cells)
+ {
+  final int bits = bits(size);
+  long low = 0L, high = 0L;
+  int blank = -1;
+  for (int i = size * size; 0 < i--;)
+  {
+   final long number = cells[i];
+   if (0 == number)
+    blank = i;
+   final int offset = i * bits;
+   if (64 <= offset)
+    high |= number << offset - 64;
+   else
+   {
+    low |= number << offset;
+    if (64 < offset + bits)
+     high |= number >>> 64 - offset;
+   }
+  }
+  return new BoardState(size, blank, low, high);
+ }
+
+ /** Returns the number of a tile at a valid position. */
+ int get(int index)
+ {
+  final int bits = bits(size);
+  final int offset = index * bits;
+  long field;
+  if (64 <= offset)
+   field = high >>> offset - 64;
+  else
+  {
+   field = low >>> offset;
+   if (64 < offset + bits)
+    field |= high << 64 - offset;
+  }
+  return (int)(field & FIELD_MASKS[bits]);
+ }
+
+ /**
+  * Returns the position of the blank tile after a move, or
+  * <code>-1</code> if the move is not permitted.
+  */
+ int target(Move direction)
+ {
+  int row = blank / size;
+  int col = blank % size;
+  if (direction.isHorizontal())
+   col += direction.getAmount();
+  else
+   row += direction.getAmount();
+  return 0 > row || size <= row || 0 > col || size <= col ? -1 : row * size + col;
+ }
+
+ private static int bits(int size)
+ {
+  return 4 >= size ? 4 : 5;
+ }
+
+ private static void checkSize(int size)
+ {
+  if (0 >= size || MAX_SIZE < size)
+   throw new IllegalArgumentException("Unsupported board size " + size);
+ }
+
+ private BoardState(int size, int blank, long low, long high)
+ {
+  this.size = (byte)size;
+  this.blank = (byte)blank;
+  this.low = low;
+  this.high = high;
+ }
+
+ private final long low, high;
+ private final byte size, blank;
+
+ private static final long[] FIELD_MASKS = { 0L, 1L, 3L, 7L, 15L, 31L };
+ private static final BoardState[] SOLVED = new BoardState[MAX_SIZE + 1];
+
+ static
+ {
+  for (int size = 1; MAX_SIZE >= size; size++)
+  {
+   final int tileCount = size * size;
+   int[] cells = new int[tileCount];
+   for (int i = 1; tileCount > i; i++)
+    cells[i - 1] = i;
+   SOLVED[size] = pack(size, cells);
+  }
+ }
+}
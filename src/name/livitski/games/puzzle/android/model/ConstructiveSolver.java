@@ -0,0 +1,488 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.Arrays;
+
+/**
+ * Solves puzzles on boards of any size without a search, the way people
+ * do: it places the tiles of the top row, then those of the left column,
+ * which leaves a board one row and one column smaller, and finishes by
+ * turning the last 2x2 square. Each tile is moved one cell at a time by
+ * taking the blank around it, and the last two tiles of a row or column
+ * are placed together with a fixed sequence of moves. Solutions take
+ * O(n<sup>3</sup>) moves on n x n boards and are far from optimal, but
+ * are found quickly even on boards of 100x100 cells.
+ * <p>
+ * Moves can be {@link #solve(int, int[], MoveHandler) streamed} to a
+ * handler as they are found, so that the memory used does not depend
+ * on the length of a solution, only on the size of the board.
+ */
+public class ConstructiveSolver extends Solver
+{
+ /**
+  * Receives moves of the blank tile in the order they solve the puzzle.
+  */
+ public interface MoveHandler
+ {
+  void processMove(Move move);
+ }
+
+ /**
+  * Finds a solution that is not optimal, with an unknown
+  * {@link Solution#getSuboptimalityBound() suboptimality bound}.
+  */
+ @Override
+ public Solution solve(BoardState start)
+ {
+  final long started = System.nanoTime();
+  final Move[][] moves = { new Move[16] };
+  final int[] length = { 0 };
+  solve(start.getSize(), start.toArray(), new MoveHandler() {
+   public void processMove(Move move)
+   {
+    if (moves[0].length == length[0])
+    {
+     Move[] grown = new Move[length[0] * 2];
+     System.arraycopy(moves[0], 0, grown, 0, length[0]);
+     moves[0] = grown;
+    }
+    moves[0][length[0]++] = move;
+   }
+  });
+  Move[] solution = new Move[length[0]];
+  System.arraycopy(moves[0], 0, solution, 0, solution.length);
+  return new Solution(start, solution, 0L, System.nanoTime() - started,
+    Double.POSITIVE_INFINITY);
+ }
+
+ /**
+  * Solves the current position on a board of any size, passing the moves
+  * to a handler as they are found. The board does not change.
+  * @return the number of moves in the solution
+  * @throws IllegalArgumentException if the position cannot be solved
+  * @throws IllegalStateException if the board is empty or not square
+  */
+ public long solve(Board board, MoveHandler handler)
+ {
+  return solve(board.getSize(), board.copyCells(), handler);
+ }
+
+ /**
+  * Solves a position on a board of any size, passing the moves
+  * to a handler as they are found.
+  * @param size the number of rows (and columns) on the board
+  * @param cells tile numbers in the {@link Board#getTileLayout() layout order},
+  * with <code>0</code> denoting the blank tile, which are not changed
+  * @param handler the receiver of moves
+  * @return the number of moves in the solution
+  * @throws IllegalArgumentException if the numbers do not form a valid
+  * arrangement of tiles or the position cannot be solved
+  */
+ public long solve(int size, int[] cells, MoveHandler handler)
+ {
+  if (0 >= size || Integer.MAX_VALUE <= (long)size * size)
+   throw new IllegalArgumentException("Unsupported board size " + size);
+  if (size * size != cells.length)
+   throw new IllegalArgumentException("Expected " + size * size
+     + " tile(s), got " + cells.length);
+  Work work = new Work(size, cells.clone(), handler);
+  return work.solve();
+ }
+
+ /**
+  * The state of one solution, which keeps positions of the tiles
+  * and marks the cells with tiles already placed.
+  */
+ private static final class Work
+ {
+  /**
+   * Solves the position and returns the number of moves made.
+   */
+  long solve()
+  {
+   final int last = size - 1;
+   for (int top = 0; size - 2 > top; top++)
+   {
+    // the top row of the remaining square
+    for (int column = top; size - 2 > column; column++)
+     place(top, column);
+    placePair(top * size + last - 1, top * size + last, 1, size);
+    // the left column of the remaining square
+    for (int row = top + 1; size - 2 > row; row++)
+     place(row, top);
+    placePair((last - 1) * size + top, last * size + top, size, 1);
+   }
+   if (1 < size)
+   {
+    // tiles of the last 2x2 square are in cyclic order after
+    // the blank tile has reached its target
+    routeBlank(last * size + last, -1);
+    final int corner = (last - 1) * size + last - 1;
+    for (int turns = 0; corner + 1 != cells[corner]; turns++)
+    {
+     if (2 < turns)
+      throw new IllegalStateException("Position cannot be solved");
+     step(Move.UP);
+     step(Move.LEFT);
+     step(Move.DOWN);
+     step(Move.RIGHT);
+    }
+   }
+   return moveCount;
+  }
+
+  /** Places the tile that belongs to a cell and locks it there. */
+  void place(int row, int column)
+  {
+   final int target = row * size + column;
+   moveTile(target + 1, target);
+   locked[target] = true;
+  }
+
+  /**
+   * Places the last two tiles of a row or a column, which cannot be
+   * placed one after another without moving the first. The second tile
+   * is parked in the first one's cell and the first tile next to it,
+   * across the row or column, then both are turned into place. When the
+   * first tile is caught in the corner that the second tile's cell forms
+   * with the cells placed before, the pair is turned into place by
+   * {@link #turnPair(int, int, int) searching} instead.
+   * @param first the cell of the first tile
+   * @param second the cell of the second tile, the last in the row
+   * or column
+   * @param along the offset between cells along the row or column
+   * @param across the offset to the next row or column
+   */
+  void placePair(int first, int second, int along, int across)
+  {
+   if (first + 1 != cells[first] || second + 1 != cells[second])
+   {
+    moveTile(second + 1, first);
+    locked[first] = true;
+    final int tile = places[first + 1], exit = second + across;
+    if (second == tile || exit == tile && second == blank)
+    {
+     if (second == tile)
+      routeBlank(exit, second);
+     locked[first] = false;
+     turnPair(first, along, across);
+    }
+    else
+    {
+     moveTile(first + 1, first + across);
+     locked[first + across] = true;
+     routeBlank(second, -1);
+     locked[first] = locked[first + across] = false;
+     step(offsetMove(-along));
+     step(offsetMove(across));
+    }
+   }
+   locked[first] = locked[second] = true;
+  }
+
+  /**
+   * Places the last two tiles of a row or column by the shortest sequence
+   * of moves within the 3x3 square that ends with the pair's cells, which
+   * must contain both tiles and the blank tile. The search visits the
+   * arrangements of these three in the square.
+   * @param first the cell of the first tile
+   * @param along the offset between cells along the row or column
+   * @param across the offset to the next row or column
+   */
+  void turnPair(int first, int along, int across)
+  {
+   // cells of the square by their index, -1 if locked
+   final int[] square = new int[PAIR_CELLS];
+   final int[] indexes = new int[3];
+   Arrays.fill(indexes, -1);
+   for (int k = 0; PAIR_CELLS > k; k++)
+   {
+    final int cell = first + (k / 3 - 1) * along + k % 3 * across;
+    square[k] = locked[cell] ? -1 : cell;
+    if (cell == places[first + 1])
+     indexes[0] = k;
+    else if (cell == places[first + 1 + along])
+     indexes[1] = k;
+    else if (cell == blank)
+     indexes[2] = k;
+   }
+   final int goal = (FIRST_INDEX * PAIR_CELLS + FIRST_INDEX + 3) * PAIR_CELLS;
+   final int stateCount = PAIR_CELLS * PAIR_CELLS * PAIR_CELLS;
+   // the blank tile's index in the state before each state reached,
+   // plus one, or zero if not reached
+   final int[] previous = new int[stateCount];
+   final int[] queue = new int[stateCount];
+   int head = 0, tail = 0;
+   final int start = (indexes[0] * PAIR_CELLS + indexes[1]) * PAIR_CELLS + indexes[2];
+   if (0 > indexes[0] || 0 > indexes[1] || 0 > indexes[2])
+    throw new IllegalStateException("Tiles of the pair are not in the square next to " + first);
+   queue[tail++] = start;
+   previous[start] = indexes[2] + 1;
+   int state = start;
+   while (head < tail)
+   {
+    state = queue[head++];
+    if (goal == state - state % PAIR_CELLS)
+     break;
+    final int x = state / (PAIR_CELLS * PAIR_CELLS), y = state / PAIR_CELLS % PAIR_CELLS,
+      b = state % PAIR_CELLS;
+    for (int direction = 0; 4 > direction; direction++)
+    {
+     final int next = b + PAIR_OFFSETS[direction];
+     if (0 > next || PAIR_CELLS <= next || 0 > square[next]
+       || 1 < direction && b / 3 != next / 3)
+      continue;
+     final int successor = ((x == next ? b : x) * PAIR_CELLS + (y == next ? b : y))
+       * PAIR_CELLS + next;
+     if (0 != previous[successor])
+      continue;
+     previous[successor] = b + 1;
+     queue[tail++] = successor;
+    }
+   }
+   if (goal != state - state % PAIR_CELLS)
+    throw new IllegalStateException("Cannot place the pair of tiles next to " + first);
+   // the blank tile's path, from the last index to the first
+   int length = 0;
+   for (; start != state; length++)
+   {
+    final int b = state % PAIR_CELLS, before = previous[state] - 1;
+    queue[length] = square[b];
+    int x = state / (PAIR_CELLS * PAIR_CELLS), y = state / PAIR_CELLS % PAIR_CELLS;
+    // the tile that the blank tile took the place of returns there
+    if (x == before)
+     x = b;
+    else if (y == before)
+     y = b;
+    state = (x * PAIR_CELLS + y) * PAIR_CELLS + before;
+   }
+   while (0 < length)
+    step(offsetMove(queue[--length] - blank));
+  }
+
+  /**
+   * Moves a tile to a cell one step at a time, taking the blank around
+   * the tile to the cell it steps to, then swapping the two.
+   */
+  void moveTile(int number, int target)
+  {
+   final int targetRow = target / size, targetColumn = target % size;
+   for (int place = places[number]; target != place; place = places[number])
+   {
+    final int row = place / size, column = place % size;
+    // the tile stays clear of rows above its target while it
+    // goes to the target's column and leaves the left columns
+    // while it goes to the target's row
+    int next;
+    if (column != targetColumn && !(row < targetRow && locked[place + (column < targetColumn ? 1 : -1)]))
+     next = place + (column < targetColumn ? 1 : -1);
+    else
+     next = place + (row < targetRow ? size : -size);
+    if (locked[next])
+     next = place + (row < targetRow ? size : -size);
+    routeBlank(next, place);
+    step(offsetMove(place - blank));
+   }
+  }
+
+  /**
+   * Takes the blank tile to a cell by the shortest path that avoids
+   * the locked cells and an obstacle. The path is first sought near
+   * the blank and the target, then anywhere on the board.
+   * @param obstacle the cell to avoid or <code>-1</code>
+   */
+  void routeBlank(int target, int obstacle)
+  {
+   if (blank == target)
+    return;
+   final int blankRow = blank / size, blankColumn = blank % size;
+   final int targetRow = target / size, targetColumn = target % size;
+   if (!route(target, obstacle,
+     Math.max(0, Math.min(blankRow, targetRow) - 1),
+     Math.min(size - 1, Math.max(blankRow, targetRow) + 1),
+     Math.max(0, Math.min(blankColumn, targetColumn) - 1),
+     Math.min(size - 1, Math.max(blankColumn, targetColumn) + 1))
+     && !route(target, obstacle, 0, size - 1, 0, size - 1))
+    throw new IllegalStateException("No path for the blank tile from " + blank
+      + " to " + target + " around " + obstacle + " on a board of size " + size);
+  }
+
+  /**
+   * Searches for a path of the blank tile within a rectangle and
+   * takes it if found.
+   * @return whether the path has been found
+   */
+  boolean route(int target, int obstacle, int top, int bottom, int left, int right)
+  {
+   if (0 == ++stamp)
+   {
+    Arrays.fill(visited, 0);
+    stamp = 1;
+   }
+   int head = 0, tail = 0;
+   queue[tail++] = blank;
+   visited[blank] = stamp;
+   while (head < tail)
+   {
+    final int cell = queue[head++];
+    if (target == cell)
+    {
+     int length = 0;
+     for (int at = target; blank != at; at = parents[at])
+      queue[length++] = at;
+     while (0 < length)
+      step(offsetMove(queue[--length] - blank));
+     return true;
+    }
+    final int row = cell / size, column = cell % size;
+    for (int direction = 0; 4 > direction; direction++)
+    {
+     final int next;
+     switch (direction)
+     {
+     case 0:
+      if (top >= row)
+       continue;
+      next = cell - size;
+      break;
+     case 1:
+      if (left >= column)
+       continue;
+      next = cell - 1;
+      break;
+     case 2:
+      if (bottom <= row)
+       continue;
+      next = cell + size;
+      break;
+     default:
+      if (right <= column)
+       continue;
+      next = cell + 1;
+     }
+     if (stamp == visited[next] || locked[next] || obstacle == next)
+      continue;
+     visited[next] = stamp;
+     parents[next] = cell;
+     queue[tail++] = next;
+    }
+   }
+   return false;
+  }
+
+  /** Moves the blank tile and passes the move to the handler. */
+  void step(Move move)
+  {
+   final int next = blank + (move.isHorizontal() ? move.getAmount() : move.getAmount() * size);
+   final int number = cells[next];
+   cells[blank] = number;
+   places[number] = blank;
+   cells[next] = 0;
+   places[0] = blank = next;
+   moveCount++;
+   handler.processMove(move);
+  }
+
+  Move offsetMove(int offset)
+  {
+   if (1 == offset)
+    return Move.RIGHT;
+   else if (-1 == offset)
+    return Move.LEFT;
+   else if (size == offset)
+    return Move.DOWN;
+   else if (-size == offset)
+    return Move.UP;
+   throw new IllegalArgumentException("No move shifts the blank tile by " + offset);
+  }
+
+  Work(int size, int[] cells, MoveHandler handler)
+  {
+   final int tileCount = cells.length;
+   this.size = size;
+   this.cells = cells;
+   this.places = new int[tileCount];
+   Arrays.fill(places, -1);
+   for (int i = 0; tileCount > i; i++)
+   {
+    final int number = cells[i];
+    if (0 > number || tileCount <= number)
+     throw new IllegalArgumentException("Invalid tile number " + number);
+    if (0 <= places[number])
+     throw new IllegalArgumentException("Tile " + number + " has already been placed");
+    places[number] = i;
+   }
+   this.blank = places[0];
+   if (!isSolvable())
+    throw new IllegalArgumentException("Position cannot be solved");
+   this.handler = handler;
+   this.locked = new boolean[tileCount];
+   this.visited = new int[tileCount];
+   this.parents = new int[tileCount];
+   this.queue = new int[tileCount];
+  }
+
+  /**
+   * Tells whether the permutation of tiles, with the blank tile
+   * in the last cell, has the parity of the blank tile's distance
+   * from that cell.
+   */
+  private boolean isSolvable()
+  {
+   final int tileCount = cells.length;
+   final boolean[] seen = new boolean[tileCount];
+   int parity = 0;
+   for (int i = 0; tileCount > i; i++)
+    if (!seen[i])
+    {
+     int length = 0;
+     for (int cell = i; !seen[cell]; length++)
+     {
+      seen[cell] = true;
+      // the tile in the cell belongs one cell before its number
+      cell = (cells[cell] + tileCount - 1) % tileCount;
+     }
+     parity += length - 1;
+    }
+   final int last = size - 1;
+   return 0 == ((parity + last - blank / size + last - blank % size) & 1);
+  }
+
+  /** Number of cells in the square searched for moves of a pair of tiles. */
+  private static final int PAIR_CELLS = 9;
+  /** Index of the first cell of the pair in that square. */
+  private static final int FIRST_INDEX = 3;
+  /** Offsets of neighbor indexes in that square: along, then across. */
+  private static final int[] PAIR_OFFSETS = { -3, 3, -1, 1 };
+
+  private final int size;
+  private final int[] cells, places;
+  private final MoveHandler handler;
+  /** Cells with tiles already placed, which the blank tile avoids. */
+  private final boolean[] locked;
+  private final int[] visited, parents, queue;
+  private int blank, stamp;
+  private long moveCount;
+ }
+}
@@ -0,0 +1,395 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded depth-first search over positions of a puzzle,
+ * which is run repeatedly with growing cost bounds by
+ * {@link IDAStarSolver iterative-deepening A*}. The search
+ * maintains its position in primitive arrays and updates the
+ * {@link Heuristic heuristic} estimate incrementally, so that
+ * expanding a node does not allocate memory.
+ * Instances of this class are not thread-safe.
+ */
+class DepthFirstSearch
+{
+ /**
+  * Value returned by {@link #search(int)} when the search
+  * reaches the solved position.
+  */
+ public static final int FOUND = -1;
+
+ /**
+  * Value returned by {@link #search(int)} when there are
+  * no nodes beyond the cost bound.
+  */
+ public static final int EXHAUSTED = Integer.MAX_VALUE;
+
+ /**
+  * Value returned by {@link #search(int)} when the search
+  * has been {@link #setStopFlag(AtomicBoolean) stopped}. A stopped
+  * search is left at an arbitrary position and should be discarded.
+  */
+ public static final int STOPPED = Integer.MIN_VALUE;
+
+ /** Returns the heuristic estimate for the current position. */
+ public int getEstimate()
+ {
+  return estimate;
+ }
+
+ /**
+  * Returns the cost of the current position, which is the number of moves
+  * made from the start position plus the {@link #setWeight(int, int) weighted}
+  * heuristic estimate, scaled by the weight's denominator.
+  */
+ public int getCost()
+ {
+  return depth * scale + estimate * weight;
+ }
+
+ /**
+  * Inflates the heuristic estimate by a ratio to find solutions faster
+  * at the expense of their length, which may exceed the optimal one
+  * by at most that ratio. All costs, including bounds passed to and
+  * returned from {@link #search(int)}, are then scaled by the ratio's
+  * denominator.
+  * @param weight the numerator of the ratio
+  * @param scale the denominator of the ratio
+  */
+ public void setWeight(int weight, int scale)
+ {
+  if (0 >= weight || 0 >= scale)
+   throw new IllegalArgumentException("Invalid weight " + weight + '/' + scale);
+  this.weight = weight;
+  this.scale = scale;
+ }
+
+ /**
+  * Prunes all nodes that cannot be on a path shorter than a limit,
+  * judging by the depth plus heuristic estimate. Pruned nodes do not
+  * affect the lowest cost returned by {@link #search(int)}.
+  * @param limit the number of moves a solution must not reach, or
+  * {@link Integer#MAX_VALUE} to search without a limit
+  */
+ public void setLengthLimit(int limit)
+ {
+  this.limit = limit;
+ }
+
+ /** Returns the number of moves made from the start position. */
+ public int getDepth()
+ {
+  return depth;
+ }
+
+ /** Returns the number of nodes expanded by this search so far. */
+ public long getNodeCount()
+ {
+  return nodeCount;
+ }
+
+ /**
+  * Returns the moves made from the start position to reach the
+  * current position. After a {@link #search(int)} has {@link #FOUND found}
+  * the solved position, the search stays there, so these are the
+  * moves that solve the puzzle.
+  */
+ public Move[] getPath()
+ {
+  Move[] moves = new Move[depth];
+  for (int i = 0; depth > i; i++)
+   moves[i] = Move.valueOf(path[i]);
+  return moves;
+ }
+
+ /**
+  * Returns the {@link Move#ordinal() ordinal number} of the last move
+  * made, or <code>-1</code> if the search is at its start position.
+  */
+ public int getLastMove()
+ {
+  return 0 == depth ? -1 : path[depth - 1];
+ }
+
+ /**
+  * Makes the search stop soon after a flag is raised. The flag is
+  * polled every few thousand nodes, and may be shared by searches
+  * running in parallel.
+  * @param stop the flag to poll or <code>null</code> to run
+  * searches to completion
+  */
+ public void setStopFlag(AtomicBoolean stop)
+ {
+  this.stop = stop;
+ }
+
+ /**
+  * Makes the search consult and update a cache of lower bounds on
+  * the number of moves left. The cache is used only while the search
+  * is neither {@link #setWeight(int, int) weighted} nor
+  * {@link #setLengthLimit(int) limited}, and may be shared by
+  * searches running in parallel on boards of the same size.
+  * @param table the cache or <code>null</code> to search without it
+  */
+ public void setTranspositionTable(TranspositionTable table)
+ {
+  this.table = table;
+  if (null != table && null == zobrist)
+  {
+   zobrist = ZobristHash.forSize(heuristic.getSize());
+   hash = zobrist.hash(cells);
+  }
+ }
+
+ /**
+  * Tells whether a move is permitted from the current position.
+  */
+ public boolean isPermitted(int move)
+ {
+  return 0 <= neighbors[blank << 2 | move];
+ }
+
+ /**
+  * Makes a move from the current position and records it in the path.
+  * @param move {@link Move#ordinal() ordinal number} of the move
+  * @throws IllegalArgumentException if the move is not permitted
+  */
+ public void push(int move)
+ {
+  if (!isPermitted(move))
+   throw new IllegalArgumentException("Cannot make a " + Move.valueOf(move)
+     + " from position " + blank);
+  apply(move);
+ }
+
+ /**
+  * Takes back the last move {@link #push(int) made}.
+  * @throws IllegalStateException if the search is at its start position
+  */
+ public void pop()
+ {
+  if (0 == depth)
+   throw new IllegalStateException("No moves to take back");
+  revert(path[depth - 1]);
+ }
+
+ /**
+  * Searches for the solved position among descendants of the current
+  * position with the {@link #getCost() cost} not exceeding a bound.
+  * Never reverses the last move made.
+  * @param bound the maximum cost of nodes to expand
+  * @return {@link #FOUND} if the solved position has been reached,
+  * {@link #STOPPED} if the search has been stopped, otherwise the lowest
+  * cost of a node beyond the bound, or {@link #EXHAUSTED} if there are no
+  * such nodes
+  */
+ public int search(int bound)
+ {
+  return search(bound, getLastMove());
+ }
+
+ private int search(int bound, int last)
+ {
+  if (null != table && 1 == weight && 1 == scale && Integer.MAX_VALUE == limit)
+   return cachedSearch(bound, last);
+  if (depth + estimate >= limit)
+   return EXHAUSTED;
+  final int cost = depth * scale + estimate * weight;
+  if (cost > bound)
+   return cost;
+  if (0 == estimate)
+   return FOUND;
+  if (0 == (++nodeCount & STOP_POLL_MASK) && null != stop && stop.get())
+   return STOPPED;
+  ensurePathCapacity();
+  int min = EXHAUSTED;
+  final int reverse = 0 > last ? -1 : last ^ 2;
+  for (int move = 0; 4 > move; move++)
+  {
+   if (reverse == move || 0 > neighbors[blank << 2 | move])
+    continue;
+   apply(move);
+   final int result = search(bound, move);
+   if (FOUND == result || STOPPED == result)
+    return result;
+   revert(move);
+   if (result < min)
+    min = result;
+  }
+  return min;
+ }
+
+ /**
+  * Searches with unit weights and no length limit, replacing
+  * heuristic estimates with greater bounds from the transposition
+  * table, and storing the bounds learned when the subtree of
+  * a position is exhausted.
+  */
+ private int cachedSearch(int bound, int last)
+ {
+  int lowerBound = estimate;
+  final int cached = table.probe(hash);
+  if (cached > lowerBound)
+   lowerBound = cached;
+  final int cost = depth + lowerBound;
+  if (cost > bound)
+   return cost;
+  if (0 == estimate)
+   return FOUND;
+  if (0 == (++nodeCount & STOP_POLL_MASK) && null != stop && stop.get())
+   return STOPPED;
+  ensurePathCapacity();
+  int min = EXHAUSTED;
+  final int reverse = 0 > last ? -1 : last ^ 2;
+  for (int move = 0; 4 > move; move++)
+  {
+   if (reverse == move || 0 > neighbors[blank << 2 | move])
+    continue;
+   apply(move);
+   final int result = search(bound, move);
+   if (FOUND == result || STOPPED == result)
+    return result;
+   revert(move);
+   if (result < min)
+    min = result;
+  }
+  // the moves not tried lead back to the previous position,
+  // which is at most one move closer to the solution
+  int learned = EXHAUSTED == min ? EXHAUSTED : min - depth;
+  if (0 < depth && learned > estimates[depth - 1] + 1)
+   learned = estimates[depth - 1] + 1;
+  if (learned > lowerBound && EXHAUSTED != learned)
+   table.store(hash, learned, bound - depth);
+  return min;
+ }
+
+ private void ensurePathCapacity()
+ {
+  if (path.length <= depth)
+  {
+   int[] longer = new int[path.length * 2];
+   System.arraycopy(path, 0, longer, 0, path.length);
+   path = longer;
+   longer = new int[estimates.length * 2];
+   System.arraycopy(estimates, 0, longer, 0, estimates.length);
+   estimates = longer;
+  }
+ }
+
+ private void apply(int move)
+ {
+  final int from = neighbors[blank << 2 | move];
+  final int to = blank;
+  final int tile = cells[from];
+  cells[to] = tile;
+  cells[from] = 0;
+  places[tile] = to;
+  places[0] = from;
+  blank = from;
+  if (null != zobrist)
+   hash = zobrist.update(hash, tile, from, to);
+  estimates[depth] = estimate;
+  estimate = heuristic.adjust(estimate, cells, places, tile, from, to);
+  path[depth++] = move;
+ }
+
+ private void revert(int move)
+ {
+  final int from = blank;
+  final int to = neighbors[blank << 2 | move ^ 2];
+  final int tile = cells[to];
+  cells[from] = tile;
+  cells[to] = 0;
+  places[tile] = from;
+  places[0] = to;
+  blank = to;
+  if (null != zobrist)
+   hash = zobrist.update(hash, tile, to, from);
+  estimate = estimates[--depth];
+ }
+
+ /**
+  * Prepares a search from a position.
+  * @throws IllegalArgumentException if the heuristic is designed
+  * for a different board size
+  */
+ DepthFirstSearch(Heuristic heuristic, BoardState start)
+ {
+  final int size = start.getSize();
+  if (heuristic.getSize() != size)
+   throw new IllegalArgumentException(heuristic + " cannot evaluate " + start);
+  final int tileCount = size * size;
+  this.heuristic = heuristic;
+  this.cells = start.toArray();
+  this.places = new int[tileCount];
+  for (int i = 0; tileCount > i; i++)
+   places[cells[i]] = i;
+  this.blank = places[0];
+  this.neighbors = neighbors(size);
+  this.estimate = heuristic.evaluate(cells, places);
+  this.path = new int[Math.max(16, 2 * estimate)];
+  this.estimates = new int[path.length];
+ }
+
+ /**
+  * Builds the table of positions adjacent to each cell in
+  * each {@link Move direction}, with <code>-1</code> for
+  * moves that would leave the board. The table is indexed by
+  * the cell's position times 4 plus the move's ordinal number.
+  */
+ static int[] neighbors(int size)
+ {
+  final int tileCount = size * size;
+  int[] neighbors = new int[tileCount << 2];
+  for (int cell = 0; tileCount > cell; cell++)
+   for (Move move : Move.values())
+   {
+    int row = cell / size;
+    int col = cell % size;
+    if (move.isHorizontal())
+     col += move.getAmount();
+    else
+     row += move.getAmount();
+    neighbors[cell << 2 | move.ordinal()] =
+      0 > row || size <= row || 0 > col || size <= col ? -1 : row * size + col;
+   }
+  return neighbors;
+ }
+
+ private final Heuristic heuristic;
+ private final int[] cells, places, neighbors;
+ /** Moves made and heuristic estimates of positions they were made from. */
+ private int[] path, estimates;
+ private int blank, estimate, depth;
+ private TranspositionTable table;
+ private ZobristHash zobrist;
+ private long hash;
+ private int weight = 1, scale = 1, limit = Integer.MAX_VALUE;
+ private long nodeCount;
+ private AtomicBoolean stop;
+
+ private static final int STOP_POLL_MASK = 0xFFF;
+}
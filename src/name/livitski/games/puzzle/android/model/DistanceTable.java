@@ -0,0 +1,260 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stores the exact number of moves needed to solve every solvable
+ * position of the puzzle on a 3x3 board, which is small enough to
+ * search completely: there are 9!/2 = 181,440 such positions and none
+ * of them takes more than 31 moves. The table has one byte per position,
+ * indexed by the {@link #index(BoardState) rank} of its arrangement of
+ * tiles among the solvable ones, as numbered by {@link Permutations}.
+ * The table is built by a breadth-first search from the solved
+ * position, which takes a fraction of a second, and can be
+ * {@link #write(OutputStream) saved} as a resource named
+ * {@link #RESOURCE_NAME} next to this class, which is then
+ * {@link #getInstance() loaded} instead. A table is safe to read
+ * from multiple threads.
+ * @see DistanceTableSolver
+ */
+public final class DistanceTable
+{
+ /**
+  * Returns the shared table, loading it from the resource or building
+  * it on first use. This may take a while, so it should be called on
+  * a background thread until {@link #isLoaded()} returns
+  * <code>true</code>.
+  */
+ public static synchronized DistanceTable getInstance()
+ {
+  if (null == instance)
+  {
+   InputStream resource = DistanceTable.class.getResourceAsStream(RESOURCE_NAME);
+   if (null != resource)
+    try
+    {
+     instance = read(resource);
+    }
+    catch (IOException failure)
+    {
+     // a damaged resource is replaced by a new table
+    }
+    finally
+    {
+     try { resource.close(); } catch (Exception ignored) {}
+    }
+   if (null == instance)
+    instance = build();
+  }
+  return instance;
+ }
+
+ /**
+  * Tells whether the shared table is available without delay.
+  */
+ public static synchronized boolean isLoaded()
+ {
+  return null != instance;
+ }
+
+ /**
+  * Builds a new table by a breadth-first search from the solved position.
+  */
+ public static DistanceTable build()
+ {
+  byte[] distances = new byte[ENTRY_COUNT];
+  for (int i = 0; ENTRY_COUNT > i; i++)
+   distances[i] = UNKNOWN;
+  // each position is enqueued once, so the queue needs no wrapping
+  int[] queue = new int[ENTRY_COUNT];
+  int head = 0, tail = 0;
+  final int[] neighbors = DepthFirstSearch.neighbors(SIZE);
+  int[] cells = ManhattanDistance.solvedCells(SIZE);
+  int[] places = new int[TILE_COUNT];
+  for (int i = 0; TILE_COUNT > i; i++)
+   places[cells[i]] = i;
+  final int root = index(places);
+  distances[root] = 0;
+  queue[tail++] = root;
+  while (head < tail)
+  {
+   final int index = queue[head++];
+   final byte next = (byte)(distances[index] + 1);
+   Permutations.solvablePlaces(index, SIZE, places);
+   for (int i = 0; TILE_COUNT > i; i++)
+    cells[places[i]] = i;
+   final int blank = places[0];
+   for (int move = 0; 4 > move; move++)
+   {
+    final int from = neighbors[blank << 2 | move];
+    if (0 > from)
+     continue;
+    final int tile = cells[from];
+    places[tile] = blank;
+    places[0] = from;
+    final int neighbor = index(places);
+    if (UNKNOWN == distances[neighbor])
+    {
+     distances[neighbor] = next;
+     queue[tail++] = neighbor;
+    }
+    places[tile] = from;
+    places[0] = blank;
+   }
+  }
+  if (ENTRY_COUNT != tail)
+   throw new IllegalStateException("Search reached " + tail + " of "
+     + ENTRY_COUNT + " positions");
+  return new DistanceTable(distances);
+ }
+
+ /**
+  * Reads a table {@link #write(OutputStream) written} earlier.
+  * @throws IOException if there is an error reading the stream or
+  * it does not contain a complete table
+  */
+ public static DistanceTable read(InputStream in)
+ 	throws IOException
+ {
+  byte[] distances = new byte[ENTRY_COUNT];
+  for (int read = 0, count; ENTRY_COUNT > read; read += count)
+   if (0 > (count = in.read(distances, read, ENTRY_COUNT - read)))
+    throw new IOException("Distance table ends after " + read + " of "
+      + ENTRY_COUNT + " entries");
+  if (0 <= in.read())
+   throw new IOException("Distance table is longer than " + ENTRY_COUNT + " entries");
+  return new DistanceTable(distances);
+ }
+
+ /**
+  * Writes this table to a stream, one byte per position in the order of
+  * {@link #index(BoardState) ranks}. The stream is not closed.
+  * @throws IOException if there is an error writing the table
+  */
+ public void write(OutputStream out)
+ 	throws IOException
+ {
+  out.write(distances);
+ }
+
+ /**
+  * Returns the number of moves in optimal solutions of a position.
+  * @throws IllegalArgumentException if the position is not on a
+  * 3x3 board or cannot be solved
+  */
+ public int distance(BoardState position)
+ {
+  checkPosition(position);
+  return distances[index(position)];
+ }
+
+ /**
+  * Returns the first move of an optimal solution of a position,
+  * or <code>null</code> if the position is solved.
+  * @throws IllegalArgumentException if the position is not on a
+  * 3x3 board or cannot be solved
+  */
+ public Move nextMove(BoardState position)
+ {
+  checkPosition(position);
+  return next(position);
+ }
+
+ /**
+  * Returns the rank of a solvable position on a 3x3 board among all
+  * such positions, a number from <code>0</code> to
+  * <code>{@link #ENTRY_COUNT} - 1</code>. The rank of an unsolvable
+  * position is that of the solvable one with tiles 7 and 8 swapped.
+  * @see Permutations#solvableIndex(int[], int)
+  * @throws IllegalArgumentException if the position is not on a
+  * 3x3 board
+  */
+ public static int index(BoardState position)
+ {
+  if (SIZE != position.getSize())
+   throw new IllegalArgumentException("Expected a 3x3 board, got " + position);
+  int[] places = new int[TILE_COUNT];
+  for (int i = 0; TILE_COUNT > i; i++)
+   places[position.get(i)] = i;
+  return index(places);
+ }
+
+ /** Number of rows (and columns) on boards covered by the table. */
+ public static final int SIZE = 3;
+
+ /** Number of solvable positions on a 3x3 board. */
+ public static final int ENTRY_COUNT = 181440;
+
+ /** Name of the resource with a prebuilt table, relative to this class. */
+ public static final String RESOURCE_NAME = "distances-3x3.bin";
+
+ /**
+  * Returns the first move of an optimal solution of a valid position,
+  * or <code>null</code> if the position is solved.
+  */
+ Move next(BoardState position)
+ {
+  final int distance = distances[index(position)];
+  if (0 == distance)
+   return null;
+  for (Move move : MOVES)
+   if (position.isPermitted(move)
+     && distance > distances[index(position.move(move))])
+    return move;
+  throw new IllegalStateException("No move from " + position
+    + " brings it closer to the solution");
+ }
+
+ /**
+  * Returns the {@link Permutations#solvableIndex(int[], int) index}
+  * of an arrangement of tiles.
+  * @param places tile positions indexed by tile number
+  */
+ static int index(int[] places)
+ {
+  return (int)Permutations.solvableIndex(places, SIZE);
+ }
+
+ private static void checkPosition(BoardState position)
+ {
+  if (SIZE != position.getSize())
+   throw new IllegalArgumentException("Expected a 3x3 board, got " + position);
+  Solver.checkSolvable(position);
+ }
+
+ private DistanceTable(byte[] distances)
+ {
+  this.distances = distances;
+ }
+
+ private final byte[] distances;
+
+ private static final int TILE_COUNT = SIZE * SIZE;
+ private static final byte UNKNOWN = (byte)0xFF;
+ private static final Move[] MOVES = Move.values();
+ private static DistanceTable instance;
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Finds optimal solutions on 3x3 boards without a search, by walking
+ * the {@link DistanceTable distance table} from the start position
+ * to the solved one, one move closer at a time.
+ */
+public class DistanceTableSolver extends Solver
+{
+ /**
+  * Returns the table that guides this solver.
+  */
+ public DistanceTable getTable()
+ {
+  return table;
+ }
+
+ /**
+  * @throws IllegalArgumentException if the position is not on
+  * a 3x3 board or cannot be solved
+  */
+ @Override
+ public Solution solve(BoardState start)
+ {
+  final long started = System.nanoTime();
+  Move[] moves = new Move[table.distance(start)];
+  BoardState position = start;
+  for (int i = 0; moves.length > i; i++)
+   position = position.move(moves[i] = table.next(position));
+  return new Solution(start, moves, moves.length, System.nanoTime() - started);
+ }
+
+ /**
+  * Creates a solver that uses a specific table.
+  */
+ public DistanceTableSolver(DistanceTable table)
+ {
+  this.table = table;
+ }
+
+ /**
+  * Creates a solver that uses the {@link DistanceTable#getInstance()
+  * shared table}, which is loaded or built on first use.
+  */
+ public DistanceTableSolver()
+ {
+  this(DistanceTable.getInstance());
+ }
+
+ private final DistanceTable table;
+}
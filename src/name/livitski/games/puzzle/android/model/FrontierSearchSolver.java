@@ -0,0 +1,876 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds optimal solutions with breadth-first heuristic search, which
+ * keeps in memory only the frontier of the search rather than all
+ * positions it has reached. The search expands positions layer by layer,
+ * in the order of their distance from the start, and prunes those with
+ * the estimated solution length above a bound. When a layer is exhausted
+ * without reaching the solved position, the search starts over with the
+ * bound raised to the shortest estimate pruned. Positions are packed
+ * into arrays of <code>long</code> values, which hold a fixed number of
+ * them, so the memory used does not depend on the board's difficulty.
+ * A layer that does not fit its array is written to disk in sorted runs,
+ * and duplicate positions are removed when these runs are merged, which
+ * makes this solver suitable for {@link Game.Level#HARD hard} boards.
+ * <p>
+ * Since earlier layers are dropped, each position carries its ancestor
+ * from the middle layer of the search. Once the solved position is
+ * reached, solutions from the start to that ancestor and from there to
+ * the solved position are found recursively, until they are short enough
+ * for depth-first search.
+ * For the explanation of this algorithm, please refer to:
+ * Rong Zhou, Eric A. Hansen, Breadth-first heuristic search,
+ * Artificial Intelligence 170 (2006), 385-408.
+ */
+public class FrontierSearchSolver extends Solver
+{
+ /**
+  * Returns the heuristic that guides this solver.
+  */
+ public Heuristic getHeuristic()
+ {
+  return heuristic;
+ }
+
+ /**
+  * Returns the number of bytes taken by arrays of positions
+  * allocated for each solution.
+  */
+ public long getMemoryLimit()
+ {
+  return memoryLimit;
+ }
+
+ /**
+  * Returns the directory that receives layers which do not fit
+  * into memory, or <code>null</code> if they go to the default
+  * temporary directory.
+  */
+ public File getDirectory()
+ {
+  return directory;
+ }
+
+ /**
+  * @throws IllegalStateException if layers of the search could not be
+  * written to or read from disk
+  */
+ @Override
+ public Solution solve(BoardState start)
+ {
+  checkSolvable(start);
+  if (heuristic.getSize() != start.getSize())
+   throw new IllegalArgumentException(heuristic + " cannot evaluate " + start);
+  final long started = System.nanoTime();
+  Search search = new Search(start.getSize());
+  try
+  {
+   Move[] moves = search.solve(start);
+   return new Solution(start, moves, search.nodeCount, System.nanoTime() - started);
+  }
+  catch (IOException failure)
+  {
+   throw new IllegalStateException("Could not store search layers for " + start, failure);
+  }
+ }
+
+ /**
+  * Creates a solver with specific memory limit and directory for layers
+  * stored on disk.
+  * @param heuristic an admissible heuristic for the boards
+  * this solver will handle
+  * @param memoryLimit number of bytes taken by arrays of positions, which
+  * excludes buffers for reading and writing files of less than 1 MB
+  * @param directory the directory that receives layers of the search
+  * which do not fit into memory, or <code>null</code> to use the
+  * default temporary directory
+  */
+ public FrontierSearchSolver(Heuristic heuristic, long memoryLimit, File directory)
+ {
+  if (BUFFER_COUNT * RECORD_BYTES * MIN_CAPACITY > memoryLimit)
+   throw new IllegalArgumentException("Memory limit of " + memoryLimit
+     + " bytes is too low");
+  final long capacity = memoryLimit / (BUFFER_COUNT * RECORD_BYTES);
+  if (Integer.MAX_VALUE / RECORD_LENGTH < capacity)
+   throw new IllegalArgumentException("Memory limit of " + memoryLimit
+     + " bytes is too high");
+  this.heuristic = heuristic;
+  this.memoryLimit = memoryLimit;
+  this.directory = directory;
+  this.capacity = (int)capacity;
+ }
+
+ /**
+  * Creates a solver with the {@link #DEFAULT_MEMORY_LIMIT default}
+  * memory limit that stores layers in the default temporary directory.
+  * @param heuristic an admissible heuristic for the boards
+  * this solver will handle
+  */
+ public FrontierSearchSolver(Heuristic heuristic)
+ {
+  this(heuristic, DEFAULT_MEMORY_LIMIT, null);
+ }
+
+ /**
+  * Creates a solver for boards of specific size guided by
+  * {@link ManhattanDistance Manhattan distance} with linear
+  * conflicts.
+  * @param size the number of rows (and columns) on the board
+  */
+ public FrontierSearchSolver(int size)
+ {
+  this(new ManhattanDistance(size, true));
+ }
+
+ /**
+  * Memory limit of solvers that do not set their own, in bytes.
+  */
+ public static final long DEFAULT_MEMORY_LIMIT = 64L << 20;
+
+ /**
+  * Number of bytes taken by a position, which includes
+  * its ancestor in the middle layer.
+  */
+ public static final int RECORD_BYTES = 32;
+
+ /**
+  * Sequence of positions at the same distance from the start,
+  * sorted and free of duplicates, that is held either in an array
+  * or in a file.
+  */
+ private static final class Layer
+ {
+  boolean isEmpty()
+  {
+   return 0L == count;
+  }
+
+  Layer(long[] records, int count)
+  {
+   this.records = records;
+   this.file = null;
+   this.count = count;
+  }
+
+  Layer(File file, long count)
+  {
+   this.records = null;
+   this.file = file;
+   this.count = count;
+  }
+
+  final long[] records;
+  final File file;
+  final long count;
+ }
+
+ /**
+  * Reads records of a layer or a run in their order. The current
+  * record is available from public fields after each
+  * {@link #next() advance}.
+  */
+ private static final class Cursor
+ {
+  boolean next()
+  	throws IOException
+  {
+   if (null != records)
+   {
+    if (limit <= position)
+     return false;
+    low = records[position++];
+    high = records[position++];
+    relayLow = records[position++];
+    relayHigh = records[position++];
+    return true;
+   }
+   if (!buffer.hasRemaining())
+   {
+    buffer.clear();
+    while (buffer.hasRemaining() && 0 <= channel.read(buffer));
+    buffer.flip();
+    if (!buffer.hasRemaining())
+     return false;
+   }
+   low = buffer.getLong();
+   high = buffer.getLong();
+   relayLow = buffer.getLong();
+   relayHigh = buffer.getLong();
+   return true;
+  }
+
+  void close()
+  	throws IOException
+  {
+   if (null != channel)
+    channel.close();
+  }
+
+  Cursor(long[] records, int count)
+  {
+   this.records = records;
+   this.limit = count * RECORD_LENGTH;
+   this.channel = null;
+   this.buffer = null;
+  }
+
+  Cursor(File file)
+  	throws IOException
+  {
+   this.records = null;
+   this.limit = 0;
+   this.channel = new FileInputStream(file).getChannel();
+   this.buffer = ByteBuffer.allocate(IO_BUFFER_BYTES);
+   buffer.flip();
+  }
+
+  long low, high, relayLow, relayHigh;
+  private final long[] records;
+  private final int limit;
+  private int position;
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+ }
+
+ /**
+  * Writes records to a file through a buffer.
+  */
+ private static final class Writer
+ {
+  void write(long low, long high, long relayLow, long relayHigh)
+  	throws IOException
+  {
+   if (!buffer.hasRemaining())
+    flush();
+   buffer.putLong(low).putLong(high).putLong(relayLow).putLong(relayHigh);
+   count++;
+  }
+
+  void close()
+  	throws IOException
+  {
+   try
+   {
+    flush();
+   }
+   finally
+   {
+    channel.close();
+   }
+  }
+
+  private void flush()
+  	throws IOException
+  {
+   buffer.flip();
+   while (buffer.hasRemaining())
+    channel.write(buffer);
+   buffer.clear();
+  }
+
+  Writer(File file)
+  	throws IOException
+  {
+   this.file = file;
+   this.channel = new FileOutputStream(file).getChannel();
+  }
+
+  final File file;
+  long count;
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES);
+ }
+
+ /**
+  * Runs the searches needed to solve a position and holds
+  * the arrays they share.
+  */
+ private final class Search
+ {
+  Move[] solve(BoardState start)
+  	throws IOException
+  {
+   final int[] from = start.toArray();
+   final int[] to = BoardState.solved(size).toArray();
+   int bound = heuristic.evaluate(from, places(from));
+   for (int result;; bound = result)
+   {
+    result = search(heuristic, from, to, bound, bound / 2);
+    if (FOUND == result)
+     break;
+    if (DepthFirstSearch.EXHAUSTED == result)
+     throw new IllegalStateException("Search space exhausted for " + start);
+   }
+   List<Move> path = new ArrayList<Move>(foundDepth);
+   final int relayDepth = bound / 2;
+   if (relayDepth < foundDepth)
+   {
+    final int length = foundDepth;
+    final int[] relay = unpack(relayLow, relayHigh, new int[tileCount]);
+    appendPath(from, relay, relayDepth, path);
+    appendPath(relay, to, length - relayDepth, path);
+   }
+   else
+    appendPath(from, to, foundDepth, path);
+   return path.toArray(new Move[path.size()]);
+  }
+
+  /**
+   * Appends an optimal path between two positions to a list.
+   * @param length the known length of that path
+   */
+  private void appendPath(int[] from, int[] to, int length, List<Move> path)
+  	throws IOException
+  {
+   final Heuristic heuristic = new ManhattanDistance(size, to, true);
+   if (DIRECT_LENGTH >= length)
+   {
+    DepthFirstSearch search = new DepthFirstSearch(heuristic, BoardState.valueOf(size, from));
+    for (int bound = search.getEstimate(); DepthFirstSearch.FOUND != bound;)
+    {
+     if (length < bound)
+      throw new IllegalStateException("No path of length " + length + " found");
+     bound = search.search(bound);
+    }
+    nodeCount += search.getNodeCount();
+    for (Move move : search.getPath())
+     path.add(move);
+    return;
+   }
+   final int relayDepth = length / 2;
+   if (FOUND != search(heuristic, from, to, length, relayDepth) || length != foundDepth)
+    throw new IllegalStateException("No path of length " + length + " found");
+   final int[] relay = unpack(relayLow, relayHigh, new int[tileCount]);
+   appendPath(from, relay, relayDepth, path);
+   appendPath(relay, to, length - relayDepth, path);
+  }
+
+  /**
+   * Expands layers of positions within a bound on the estimated
+   * solution length until the goal is reached. On success, sets
+   * {@link #foundDepth} and the goal's ancestor in the relay layer.
+   * @param heuristic estimates the number of moves to the goal
+   * @param from the start position
+   * @param to the goal position
+   * @param bound the largest estimated length of solutions to look for
+   * @param relayDepth distance from the start of the layer that
+   * provides ancestors of positions beyond it
+   * @return {@link #FOUND} if the goal has been reached, otherwise the
+   * lowest estimate pruned or {@link DepthFirstSearch#EXHAUSTED} if
+   * there were none
+   */
+  private int search(Heuristic heuristic, int[] from, int[] to, int bound, int relayDepth)
+  	throws IOException
+  {
+   pack(to);
+   final long goalLow = packedLow, goalHigh = packedHigh;
+   pack(from);
+   if (goalLow == packedLow && goalHigh == packedHigh)
+   {
+    foundDepth = 0;
+    relayLow = packedLow;
+    relayHigh = packedHigh;
+    return FOUND;
+   }
+   long[] records = allocate();
+   records[0] = packedLow;
+   records[1] = packedHigh;
+   records[2] = 0 == relayDepth ? packedLow : 0L;
+   records[3] = 0 == relayDepth ? packedHigh : 0L;
+   Layer previous = new Layer(allocate(), 0), current = new Layer(records, 1);
+   int min = DepthFirstSearch.EXHAUSTED;
+   try
+   {
+    for (int depth = 0; !current.isEmpty(); depth++)
+    {
+     Builder next = new Builder(allocate());
+     Cursor cursor = cursor(current);
+     try
+     {
+      while (cursor.next())
+      {
+       nodeCount++;
+       unpack(cursor.low, cursor.high, cells);
+       places(cells);
+       final int estimate = heuristic.evaluate(cells, places);
+       final int blank = places[0];
+       for (int move = 0; 4 > move; move++)
+       {
+        final int source = neighbors[blank << 2 | move];
+        if (0 > source)
+         continue;
+        final int tile = cells[source];
+        cells[blank] = tile;
+        cells[source] = 0;
+        places[tile] = blank;
+        places[0] = source;
+        final int length = depth + 1 + heuristic.adjust(estimate, cells, places, tile, source, blank);
+        if (bound >= length)
+         pack(cells);
+        cells[source] = tile;
+        cells[blank] = 0;
+        places[tile] = source;
+        places[0] = blank;
+        if (bound < length)
+        {
+         if (min > length)
+          min = length;
+         continue;
+        }
+        long childRelayLow = 0L, childRelayHigh = 0L;
+        if (relayDepth == depth + 1)
+        {
+         childRelayLow = packedLow;
+         childRelayHigh = packedHigh;
+        }
+        else if (relayDepth <= depth)
+        {
+         childRelayLow = cursor.relayLow;
+         childRelayHigh = cursor.relayHigh;
+        }
+        if (goalLow == packedLow && goalHigh == packedHigh)
+        {
+         foundDepth = depth + 1;
+         relayLow = childRelayLow;
+         relayHigh = childRelayHigh;
+         next.discard();
+         return FOUND;
+        }
+        next.add(packedLow, packedHigh, childRelayLow, childRelayHigh);
+       }
+      }
+     }
+     finally
+     {
+      cursor.close();
+     }
+     Layer layer = next.finish(previous);
+     release(previous);
+     previous = current;
+     current = layer;
+    }
+    return min;
+   }
+   finally
+   {
+    release(previous);
+    release(current);
+   }
+  }
+
+  private Cursor cursor(Layer layer)
+  	throws IOException
+  {
+   return null == layer.file
+     ? new Cursor(layer.records, (int)layer.count) : new Cursor(layer.file);
+  }
+
+  private long[] allocate()
+  {
+   if (!free.isEmpty())
+    return free.remove(free.size() - 1);
+   return new long[capacity * RECORD_LENGTH];
+  }
+
+  private void release(Layer layer)
+  {
+   if (null != layer.records)
+   {
+    if (!free.contains(layer.records))
+     free.add(layer.records);
+   }
+   else if (!layer.file.delete())
+    layer.file.deleteOnExit();
+  }
+
+  /**
+   * Packs a position into {@link #packedLow} and {@link #packedHigh},
+   * leaving out the last cell, which holds the tile missing from
+   * the other cells.
+   */
+  private void pack(int[] cells)
+  {
+   long low = 0L, high = 0L;
+   for (int i = 0, last = tileCount - 1; last > i; i++)
+    if (fieldsPerLong > i)
+     low |= (long)cells[i] << i * bits;
+    else
+     high |= (long)cells[i] << (i - fieldsPerLong) * bits;
+   packedLow = low;
+   packedHigh = high;
+  }
+
+  private int[] unpack(long low, long high, int[] cells)
+  {
+   final long mask = (1L << bits) - 1L;
+   int missing = tileCount * (tileCount - 1) / 2;
+   for (int i = 0, last = tileCount - 1; last > i; i++)
+   {
+    final int number = fieldsPerLong > i
+      ? (int)(low >>> i * bits & mask) : (int)(high >>> (i - fieldsPerLong) * bits & mask);
+    cells[i] = number;
+    missing -= number;
+   }
+   cells[tileCount - 1] = missing;
+   return cells;
+  }
+
+  private int[] places(int[] cells)
+  {
+   for (int i = 0; tileCount > i; i++)
+    places[cells[i]] = i;
+   return places;
+  }
+
+  Search(int size)
+  {
+   this.size = size;
+   this.tileCount = size * size;
+   this.bits = 4 < size ? 5 : 4;
+   this.fieldsPerLong = Long.SIZE / bits;
+   this.neighbors = DepthFirstSearch.neighbors(size);
+   this.cells = new int[tileCount];
+   this.places = new int[tileCount];
+  }
+
+  long nodeCount;
+
+  /**
+   * Collects positions of the next layer in an array, which is sorted
+   * and written to a new file whenever it fills up with distinct
+   * positions. These runs are merged into the layer when it is complete.
+   */
+  private final class Builder
+  {
+   void add(long low, long high, long relayLow, long relayHigh)
+   	throws IOException
+   {
+    int i = count * RECORD_LENGTH;
+    records[i++] = low;
+    records[i++] = high;
+    records[i++] = relayLow;
+    records[i] = relayHigh;
+    if (capacity == ++count)
+    {
+     count = sortUnique(records, count);
+     if (capacity - capacity / 4 < count)
+      spill();
+    }
+   }
+
+   /**
+    * Completes the layer, removing positions that belong to the
+    * previous layer.
+    */
+   Layer finish(Layer previous)
+   	throws IOException
+   {
+    count = sortUnique(records, count);
+    if (runs.isEmpty())
+    {
+     Cursor cursor = cursor(previous);
+     try
+     {
+      count = subtract(cursor);
+     }
+     finally
+     {
+      cursor.close();
+     }
+     return new Layer(records, count);
+    }
+    if (0 < count)
+     spill();
+    free.add(records);
+    while (MAX_FAN_IN < runs.size())
+    {
+     List<File> group = new ArrayList<File>(runs.subList(0, MAX_FAN_IN));
+     runs.subList(0, MAX_FAN_IN).clear();
+     runs.add(merge(group, null).file);
+    }
+    Cursor cursor = cursor(previous);
+    try
+    {
+     Writer layer = merge(new ArrayList<File>(runs), cursor);
+     runs.clear();
+     return new Layer(layer.file, layer.count);
+    }
+    finally
+    {
+     cursor.close();
+    }
+   }
+
+   /**
+    * Drops the positions collected and releases their storage.
+    */
+   void discard()
+   {
+    free.add(records);
+    for (File run : runs)
+     if (!run.delete())
+      run.deleteOnExit();
+    runs.clear();
+   }
+
+   /**
+    * Removes positions found by a cursor from the sorted array.
+    * @return the number of positions left
+    */
+   private int subtract(Cursor cursor)
+   	throws IOException
+   {
+    boolean more = cursor.next();
+    int kept = 0;
+    for (int i = 0; count * RECORD_LENGTH > i; i += RECORD_LENGTH)
+    {
+     final long low = records[i], high = records[i + 1];
+     while (more && 0 > compare(cursor.low, cursor.high, low, high))
+      more = cursor.next();
+     if (more && cursor.low == low && cursor.high == high)
+      continue;
+     if (kept != i)
+      System.arraycopy(records, i, records, kept, RECORD_LENGTH);
+     kept += RECORD_LENGTH;
+    }
+    return kept / RECORD_LENGTH;
+   }
+
+   private void spill()
+   	throws IOException
+   {
+    Writer run = new Writer(createFile());
+    try
+    {
+     for (int i = 0; count * RECORD_LENGTH > i; i += RECORD_LENGTH)
+      run.write(records[i], records[i + 1], records[i + 2], records[i + 3]);
+    }
+    finally
+    {
+     run.close();
+    }
+    runs.add(run.file);
+    count = 0;
+   }
+
+   /**
+    * Merges sorted runs into a new file, dropping duplicates and
+    * positions found by a cursor, and deletes the runs.
+    * @param excluded the cursor over positions to drop, or
+    * <code>null</code> to keep all distinct positions
+    */
+   private Writer merge(List<File> inputs, Cursor excluded)
+   	throws IOException
+   {
+    final int n = inputs.size();
+    Cursor[] cursors = new Cursor[n];
+    boolean[] more = new boolean[n];
+    Writer output = new Writer(createFile());
+    try
+    {
+     for (int i = 0; n > i; i++)
+     {
+      cursors[i] = new Cursor(inputs.get(i));
+      more[i] = cursors[i].next();
+     }
+     boolean moreExcluded = null != excluded && excluded.next();
+     boolean first = true;
+     long lastLow = 0L, lastHigh = 0L;
+     for (;;)
+     {
+      int least = -1;
+      for (int i = 0; n > i; i++)
+       if (more[i] && (0 > least || 0 > compare(cursors[i].low, cursors[i].high,
+         cursors[least].low, cursors[least].high)))
+        least = i;
+      if (0 > least)
+       break;
+      final Cursor cursor = cursors[least];
+      final long low = cursor.low, high = cursor.high;
+      if (first || lastLow != low || lastHigh != high)
+      {
+       while (moreExcluded && 0 > compare(excluded.low, excluded.high, low, high))
+        moreExcluded = excluded.next();
+       if (!moreExcluded || excluded.low != low || excluded.high != high)
+        output.write(low, high, cursor.relayLow, cursor.relayHigh);
+       first = false;
+       lastLow = low;
+       lastHigh = high;
+      }
+      more[least] = cursor.next();
+     }
+    }
+    finally
+    {
+     output.close();
+     for (Cursor cursor : cursors)
+      if (null != cursor)
+       cursor.close();
+     for (File input : inputs)
+      if (!input.delete())
+       input.deleteOnExit();
+    }
+    return output;
+   }
+
+   private File createFile()
+   	throws IOException
+   {
+    return File.createTempFile("layer", ".tmp", directory);
+   }
+
+   Builder(long[] records)
+   {
+    this.records = records;
+   }
+
+   private final long[] records;
+   private int count;
+   private final List<File> runs = new ArrayList<File>();
+  }
+
+  private final int size, tileCount, bits, fieldsPerLong;
+  private final int[] neighbors, cells, places;
+  private final List<long[]> free = new ArrayList<long[]>(BUFFER_COUNT);
+  private long packedLow, packedHigh;
+  /** Distance to the goal and its ancestor in the relay layer after a successful search. */
+  private int foundDepth;
+  private long relayLow, relayHigh;
+ }
+
+ /**
+  * Sorts records by their positions and removes records
+  * with duplicate positions.
+  * @return the number of records left
+  */
+ static int sortUnique(long[] records, int count)
+ {
+  sort(records, 0, count);
+  int kept = 0;
+  for (int i = 0; count > i; i++)
+  {
+   final int offset = i * RECORD_LENGTH;
+   if (0 < kept)
+   {
+    final int last = (kept - 1) * RECORD_LENGTH;
+    if (records[last] == records[offset] && records[last + 1] == records[offset + 1])
+     continue;
+   }
+   if (kept != i)
+    System.arraycopy(records, offset, records, kept * RECORD_LENGTH, RECORD_LENGTH);
+   kept++;
+  }
+  return kept;
+ }
+
+ /**
+  * Sorts a range of records with three-way quicksort, which
+  * handles runs of duplicate positions in linear time.
+  */
+ private static void sort(long[] records, int from, int to)
+ {
+  while (INSERTION_SORT_LIMIT < to - from)
+  {
+   final int pivot = (from + (to - from) / 2) * RECORD_LENGTH;
+   final long pivotLow = records[pivot], pivotHigh = records[pivot + 1];
+   int less = from, i = from, greater = to;
+   while (greater > i)
+   {
+    final int offset = i * RECORD_LENGTH;
+    final int order = compare(records[offset], records[offset + 1], pivotLow, pivotHigh);
+    if (0 > order)
+     swap(records, less++, i++);
+    else if (0 < order)
+     swap(records, i, --greater);
+    else
+     i++;
+   }
+   // recurse into the smaller part to bound the stack depth
+   if (less - from < to - greater)
+   {
+    sort(records, from, less);
+    from = greater;
+   }
+   else
+   {
+    sort(records, greater, to);
+    to = less;
+   }
+  }
+  for (int i = from + 1; to > i; i++)
+   for (int j = i; from < j && 0 < compare(records[(j - 1) * RECORD_LENGTH],
+     records[(j - 1) * RECORD_LENGTH + 1], records[j * RECORD_LENGTH],
+     records[j * RECORD_LENGTH + 1]); j--)
+    swap(records, j - 1, j);
+ }
+
+ private static void swap(long[] records, int i, int j)
+ {
+  i *= RECORD_LENGTH;
+  j *= RECORD_LENGTH;
+  for (int k = 0; RECORD_LENGTH > k; k++, i++, j++)
+  {
+   final long temp = records[i];
+   records[i] = records[j];
+   records[j] = temp;
+  }
+ }
+
+ private static int compare(long low, long high, long otherLow, long otherHigh)
+ {
+  if (low != otherLow)
+   return low < otherLow ? -1 : 1;
+  return high < otherHigh ? -1 : high == otherHigh ? 0 : 1;
+ }
+
+ /** Result of a search that has reached the goal. */
+ private static final int FOUND = -1;
+ /** Number of <code>long</code> values in a record. */
+ private static final int RECORD_LENGTH = RECORD_BYTES / 8;
+ /** Arrays for the previous, current, and next layers. */
+ private static final int BUFFER_COUNT = 3;
+ private static final int MIN_CAPACITY = 1024;
+ /** Longest path found with depth-first search when recovering a solution. */
+ private static final int DIRECT_LENGTH = 20;
+ private static final int MAX_FAN_IN = 16;
+ private static final int IO_BUFFER_BYTES = 32 << 10;
+ private static final int INSERTION_SORT_LIMIT = 16;
+
+ private final Heuristic heuristic;
+ private final long memoryLimit;
+ private final File directory;
+ /** Number of records held by each array. */
+ private final int capacity;
+}
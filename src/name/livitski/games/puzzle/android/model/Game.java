@@ -22,10 +22,14 @@
  */
 package name.livitski.games.puzzle.android.model;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.util.Random;
+import java.util.concurrent.Future;
 
+import name.livitski.games.puzzle.android.Application;
 import name.livitski.games.puzzle.android.ImageSource;
 import name.livitski.games.puzzle.android.R;
 import android.content.Context;
@@ -37,6 +41,7 @@ import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.util.Base64;
 import android.util.Log;
 
 /**
@@ -122,19 +127,61 @@ public class Game implements MoveListener, TileOnTargetListener
   board.placeTilesOnTarget();
  }
 
- public void start()
+ /**
+  * Suggests the next move towards the solution. The search for it runs
+  * in the background and is allowed to take up to a time limit, after
+  * which the best move found so far is returned. Following suggested
+  * moves makes subsequent hints cheaper, as the plan behind them is kept
+  * and improved until the player deviates from it. On the
+  * {@link Level#EASY easy level}, optimal moves are looked up in
+  * a {@link DistanceTable table} without a search.
+  * Must be called on the thread that makes moves on the board.
+  * @param application the application that runs the search
+  * @param timeoutMillis the time limit for the search
+  * @return the future move of the blank tile, or <code>null</code>
+  * in the future if the puzzle is solved or no move is found in time
+  * @throws IllegalStateException if the game has not been started
+  */
+ public Future<Move> requestHint(Application application, long timeoutMillis)
  {
-  this.moveCount = 0;
-  board.placeTilesRandom();
   if (!started)
-  {
-   this.score = board.getScore();
-   board.addMoveListener(this);
-   board.addTileOnTargetListener(this);
-  }
-  this.started = true;
+   throw new IllegalStateException("The game has not been started, cannot suggest a move");
+  if (null == hints)
+   hints = new HintPlanner(new ManhattanDistance(board.getSize(), true));
+  return hints.request(board.getState(), timeoutMillis, application);
  }
 
+ /**
+  * Stops background searches for hints, if any. A subsequent
+  * {@link #requestHint(Application, long) hint request} starts
+  * a new search.
+  */
+ public void cancelHints()
+ {
+  if (null != hints)
+   hints.cancel();
+ }
+
+ public void start()
+ {
+  start(null);
+ }
+
+ /**
+  * Starts a game with tiles arranged by a seed. The same seed yields
+  * the same puzzle on any device, which allows daily puzzles to be
+  * shared and reported games to be replayed.
+  * @param seed the seed of a {@link SplitMixRandom} that arranges tiles
+  */
+ public void start(long seed)
+ {
+  start(new SplitMixRandom(seed));
+ }
+
+ /**
+  * Saves the level and the image of this game, along with its state
+  * unless the game is recorded in a {@link #setJournal(MoveJournal) journal}.
+  */
  public void save(Editor settings)
  {
   settings.putString(DIFFICULTY_SETTING, getDifficulty().toString());
@@ -148,43 +195,103 @@ public class Game implements MoveListener, TileOnTargetListener
    else
     settings.putString(IMAGE_ID_SETTING, id.toString());
   }
-  settings.putString(DIFFICULTY_SETTING, getDifficulty().toString());
-  if (!isStarted())
-  {
-   settings.remove(MOVE_COUNT_SETTING);
-   settings.remove(BOARD_STATE_SETTING);
-  }
+  // a game recorded in the journal is not saved again
+  if (!isStarted() || null != journal)
+   settings.remove(GAME_STATE_SETTING);
   else
   {
-   settings.putInt(MOVE_COUNT_SETTING, getMoveCount());
-   settings.putString(BOARD_STATE_SETTING, getBoard().getTileLayout());
+   settings.putString(GAME_STATE_SETTING,
+     Base64.encodeToString(getState().encode(), Base64.NO_WRAP));
   }
+  // settings of earlier versions are read once and replaced
+  settings.remove(MOVE_COUNT_SETTING);
+  settings.remove(BOARD_STATE_SETTING);
  }
 
  public void load(SharedPreferences state)
  {
-  String layout = state.getString(BOARD_STATE_SETTING, null);
-  if (null != layout)
+  final String encoded = state.getString(GAME_STATE_SETTING, null);
+  final String layout = state.getString(BOARD_STATE_SETTING, null);
+  if (null != encoded || null != layout)
   {
-   moveCount = state.getInt(MOVE_COUNT_SETTING, 0);
+   cancelHints();
    try
    {
-    board.placeTiles(layout);
+    if (null != encoded)
+    {
+     GameStateCodec codec = new GameStateCodec();
+     codec.setHistory(history);
+     codec.decode(Base64.decode(encoded, Base64.NO_WRAP));
+     if (difficulty != codec.getLevel())
+      throw new IllegalArgumentException("Saved game of level " + codec.getLevel()
+        + " does not match level " + difficulty);
+     moveCount = codec.getMoveCount();
+     board.placeTiles(codec.getPosition());
+    }
+    else
+    {
+     // saved by an earlier version
+     moveCount = state.getInt(MOVE_COUNT_SETTING, 0);
+     history.clear();
+     board.placeTiles(layout);
+    }
    }
-   catch (RuntimeException badLayout)
+   catch (RuntimeException badState)
    {
     Log.w(getClass().getName(), "Error loading game, parsing failed for \""
-      + BOARD_STATE_SETTING + '"', badLayout);
+      + (null != encoded ? GAME_STATE_SETTING : BOARD_STATE_SETTING) + '"', badState);
+    history.clear();
     board.placeTilesRandom();
    }
-   if (!started)
-   {
-    score = board.getScore();
-    board.addMoveListener(this);
-    board.addTileOnTargetListener(this);
-   }
-   this.started = true;
+   setStarted();
+  }
+ }
+
+ /**
+  * Makes this game record its moves in a journal, starting with the
+  * current state if the game has been started. Otherwise, the game
+  * the journal holds is discarded, and the journal starts with the
+  * state this game starts with.
+  * @param journal the journal or <code>null</code> to stop recording
+  */
+ public void setJournal(MoveJournal journal)
+ {
+  this.journal = journal;
+  if (null == journal)
+   return;
+  if (started)
+   beginJournal();
+  else
+   discardJournal();
+ }
+
+ /**
+  * Restores this game from a journal, if it holds a game of the same
+  * level, and keeps recording moves in that journal.
+  * @return whether the game has been restored, otherwise the journal
+  * is left intact and is not used by this game
+  * @see #setJournal(MoveJournal)
+  */
+ public boolean recover(MoveJournal journal)
+ {
+  GameStateCodec codec = new GameStateCodec();
+  try
+  {
+   if (!journal.recover(codec) || difficulty != codec.getLevel())
+    return false;
+  }
+  catch (IOException failure)
+  {
+   Log.w(getClass().getName(), "Error recovering game from the journal", failure);
+   return false;
   }
+  cancelHints();
+  moveCount = codec.getMoveCount();
+  history = codec.getHistory();
+  board.placeTiles(codec.getPosition());
+  this.journal = journal;
+  setStarted();
+  return true;
  }
 
  public void updateImageSize(Context context)
@@ -262,9 +369,86 @@ public class Game implements MoveListener, TileOnTargetListener
   });
  }
 
+ /**
+  * Tells whether there is a move to {@link #undo() undo}.
+  */
+ public boolean canUndo()
+ {
+  return started && history.canUndo();
+ }
+
+ /**
+  * Reverts the last move made, or redone, in this game. Undoing a move
+  * takes a move on the board, which counts towards the move count.
+  * @throws IllegalStateException if there is no move to undo
+  */
+ public void undo()
+ {
+  if (!canUndo())
+   throw new IllegalStateException("No moves to undo");
+  revisit(history.undo());
+  if (null != journal)
+   try
+   {
+    journal.moveUndone();
+   }
+   catch (IOException failure)
+   {
+    journalFailed(failure);
+   }
+ }
+
+ /**
+  * Tells whether there is a move to {@link #redo() redo}.
+  */
+ public boolean canRedo()
+ {
+  return started && history.canRedo();
+ }
+
+ /**
+  * Repeats the move undone last, unless another move has been made
+  * since then.
+  * @throws IllegalStateException if there is no move to redo
+  */
+ public void redo()
+ {
+  if (!canRedo())
+   throw new IllegalStateException("No moves to redo");
+  revisit(history.redo());
+  if (null != journal)
+   try
+   {
+    journal.moveRedone();
+   }
+   catch (IOException failure)
+   {
+    journalFailed(failure);
+   }
+ }
+
  public void tileMoved(Tile from, Tile to)
  {
   moveCount++;
+  final Move move = Move.valueOf(from.getRow() - to.getRow(), from.getColumn() - to.getColumn());
+  if (!revisiting)
+  {
+   history.add(move);
+   if (null != journal)
+    try
+    {
+     journal.moveMade(move);
+    }
+    catch (IOException failure)
+    {
+     journalFailed(failure);
+    }
+  }
+  if (null != hints)
+   hints.moveMade(move);
+  // a solved puzzle is not worth recovering
+  if (null != journal && isSolved())
+   discardJournal();
  }
 
  public void tileOnTargetStateChanged(Tile tile, boolean onTarget)
@@ -319,9 +503,97 @@ public class Game implements MoveListener, TileOnTargetListener
  public static final String IMAGE_ID_SETTING = "image_id";
  public static final String DIFFICULTY_SETTING = "difficulty";
 
+ protected static final String GAME_STATE_SETTING = "game_state";
+ /** Board layout saved by earlier versions, replaced by the game state. */
  protected static final String BOARD_STATE_SETTING = "tiles";
+ /** Move count saved by earlier versions, replaced by the game state. */
  protected static final String MOVE_COUNT_SETTING = "move_count";
 
+ private void start(Random random)
+ {
+  this.moveCount = 0;
+  history.clear();
+  cancelHints();
+  if (null == random)
+   board.placeTilesRandom();
+  else
+   board.placeTilesRandom(random);
+  setStarted();
+ }
+
+ private void setStarted()
+ {
+  if (!started)
+  {
+   this.score = board.getScore();
+   board.addMoveListener(this);
+   board.addTileOnTargetListener(this);
+  }
+  this.started = true;
+  if (null != journal)
+   beginJournal();
+ }
+
+ private GameStateCodec getState()
+ {
+  GameStateCodec codec = new GameStateCodec();
+  codec.setLevel(difficulty);
+  codec.setPosition(board.getState());
+  codec.setMoveCount(moveCount);
+  codec.setHistory(history);
+  return codec;
+ }
+
+ private void beginJournal()
+ {
+  try
+  {
+   journal.begin(getState());
+  }
+  catch (IOException failure)
+  {
+   journalFailed(failure);
+  }
+ }
+
+ private void discardJournal()
+ {
+  try
+  {
+   journal.discard();
+  }
+  catch (IOException failure)
+  {
+   journalFailed(failure);
+  }
+ }
+
+ /**
+  * Stops recording moves after a journal error, so that the game
+  * can go on.
+  */
+ private void journalFailed(IOException failure)
+ {
+  Log.w(getClass().getName(), "Error writing the journal, moves are no longer recorded", failure);
+  journal = null;
+ }
+
+ /**
+  * Makes a move from the history, which is not recorded again.
+  */
+ private void revisit(Move move)
+ {
+  revisiting = true;
+  try
+  {
+   board.move(move);
+  }
+  finally
+  {
+   revisiting = false;
+  }
+ }
+
  private void clearImages()
  {
   fullImageCache = null;
@@ -355,6 +627,11 @@ public class Game implements MoveListener, TileOnTargetListener
  private float imageAspectRatio = Float.NaN;
  private Bitmap scaledImage;
  private Reference<Bitmap> fullImageCache;
+ private HintPlanner hints;
+ private MoveHistory history = new MoveHistory();
+ private MoveJournal journal;
+ /** Tells whether the board is making a move from the history. */
+ private boolean revisiting;
 
  private static final Board.TileHandler TILE_IMAGE_REMOVER = new Board.TileHandler() {
   public void processTile(Tile tile)
@@ -0,0 +1,304 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Encodes the state of a {@link Game game} in progress into a few bytes
+ * and decodes it back. The encoding starts with a version byte and the
+ * {@link Game.Level level}, followed by the
+ * {@link Permutations#solvableIndex(int[], int) index} of the position
+ * on the board, the move count, the size of the {@link MoveHistory move
+ * history} and the position in it, followed by the moves in the history
+ * packed four to a byte. The first version of the encoding had no moves
+ * in the history, and is still decoded.
+ * The index is written in fixed-length big-endian chunks, each of which
+ * holds the {@link Permutations#rank(int[], int, int, int) part of the
+ * index} that fits into a <code>long</code>, so that positions on boards
+ * larger than 4x4 take only a few bytes more. Counts are written as
+ * unsigned variable-length numbers, 7 bits per byte, lower bits first.
+ * Decoding works with primitive values and does not box them.
+ * Instances of this class hold the state being encoded or decoded,
+ * and are not thread-safe.
+ */
+public final class GameStateCodec
+{
+ /**
+  * Encodes the state held by this codec.
+  * @throws IllegalStateException if the level or the position is
+  * missing, or the position is not solvable
+  */
+ public byte[] encode()
+ {
+  if (null == level || null == position)
+   throw new IllegalStateException("Both the level and the position are required");
+  final int size = level.getBoardSize();
+  final int tileCount = size * size;
+  int[] places = new int[tileCount];
+  for (int i = 0; tileCount > i; i++)
+   places[position.get(i)] = i;
+  if (!Permutations.isSolvable(places, size))
+   throw new IllegalStateException(position + " is not solvable");
+  final int[] chunks = CHUNKS[size];
+  int length = 2 + varIntLength(moveCount) + varIntLength(history.getSize())
+    + varIntLength(history.getPosition()) + history.getByteCount();
+  for (int i = 1; chunks.length > i; i += 2)
+   length += chunks[i];
+  byte[] data = new byte[length];
+  int offset = 0;
+  data[offset++] = VERSION;
+  data[offset++] = (byte)level.ordinal();
+  for (int i = 0, from = 0; chunks.length > i; i += 2)
+  {
+   final int to = chunks[i];
+   long rank = Permutations.rank(places, from, to, tileCount);
+   for (int j = chunks[i + 1]; 0 < j--;)
+   {
+    data[offset + j] = (byte)rank;
+    rank >>>= 8;
+   }
+   offset += chunks[i + 1];
+   from = to;
+  }
+  offset = putVarInt(data, offset, moveCount);
+  offset = putVarInt(data, offset, history.getSize());
+  offset = putVarInt(data, offset, history.getPosition());
+  history.write(data, offset);
+  return data;
+ }
+
+ /**
+  * Decodes a state {@link #encode() encoded} earlier into this codec.
+  * @return this codec
+  * @throws IllegalArgumentException if the data is malformed or
+  * has been encoded by an unsupported version of this class
+  */
+ public GameStateCodec decode(byte[] data)
+ {
+  if (2 > data.length)
+   throw new IllegalArgumentException("Game state of " + data.length
+     + " byte(s) is truncated");
+  final byte version = data[0];
+  if (FIRST_VERSION > version || VERSION < version)
+   throw new IllegalArgumentException("Unsupported version " + data[0]
+     + " of the game state");
+  final Game.Level[] levels = Game.Level.values();
+  if (0 > data[1] || levels.length <= data[1])
+   throw new IllegalArgumentException("Invalid level " + data[1]
+     + " in the game state");
+  final Game.Level level = levels[data[1]];
+  final int size = level.getBoardSize();
+  final int tileCount = size * size;
+  final int[] chunks = CHUNKS[size];
+  int[] places = new int[tileCount];
+  int offset = 2;
+  for (int i = 0, from = 0; chunks.length > i; i += 2)
+  {
+   final int to = chunks[i];
+   if (data.length < offset + chunks[i + 1])
+    throw new IllegalArgumentException("Game state of " + data.length
+      + " byte(s) is truncated");
+   long rank = 0L;
+   for (int j = chunks[i + 1]; 0 < j--;)
+    rank = rank << 8 | data[offset++] & 0xFF;
+   if (0L > rank || Permutations.count(tileCount - from, to - from) <= rank)
+    throw new IllegalArgumentException("Invalid position in the game state");
+   Permutations.unrank(rank, from, to, tileCount, places);
+   from = to;
+  }
+  Permutations.placeLastTiles(places, size);
+  int[] cells = new int[tileCount];
+  for (int i = 0; tileCount > i; i++)
+   cells[places[i]] = i;
+  cursor = offset;
+  final int moveCount = getVarInt(data);
+  if (FIRST_VERSION == version)
+  {
+   // the position in a history that was never saved
+   getVarInt(data);
+   history.clear();
+  }
+  else
+  {
+   final int historySize = getVarInt(data);
+   final int historyPosition = getVarInt(data);
+   history.read(data, cursor, historySize, historyPosition);
+   cursor += history.getByteCount();
+  }
+  if (data.length != cursor)
+   throw new IllegalArgumentException("Unexpected data at offset " + cursor
+     + " of the game state");
+  this.level = level;
+  this.position = BoardState.pack(size, cells);
+  this.moveCount = moveCount;
+  return this;
+ }
+
+ public Game.Level getLevel()
+ {
+  return level;
+ }
+
+ public void setLevel(Game.Level level)
+ {
+  this.level = level;
+ }
+
+ /** Returns the position on the board. */
+ public BoardState getPosition()
+ {
+  return position;
+ }
+
+ /**
+  * Sets the position on the board.
+  * @throws IllegalArgumentException if the position is not on
+  * a board of the current level
+  */
+ public void setPosition(BoardState position)
+ {
+  if (null != level && null != position && level.getBoardSize() != position.getSize())
+   throw new IllegalArgumentException(position + " is not on a board of level " + level);
+  this.position = position;
+ }
+
+ public int getMoveCount()
+ {
+  return moveCount;
+ }
+
+ public void setMoveCount(int moveCount)
+ {
+  checkCount(moveCount);
+  this.moveCount = moveCount;
+ }
+
+ /**
+  * Returns the history of moves to be encoded, or the one that
+  * receives decoded moves.
+  */
+ public MoveHistory getHistory()
+ {
+  return history;
+ }
+
+ /**
+  * Sets the history of moves to be encoded, or the one that
+  * receives decoded moves, replacing its contents.
+  */
+ public void setHistory(MoveHistory history)
+ {
+  if (null == history)
+   throw new NullPointerException("Move history is required");
+  this.history = history;
+ }
+
+ /** Version of the encoding written by this class. */
+ public static final byte VERSION = 2;
+ /** Earliest version of the encoding that can be decoded. */
+ public static final byte FIRST_VERSION = 1;
+
+ /**
+  * Splits the digits of position indices on a board into ranges whose
+  * parts of indices fit into a <code>long</code>.
+  * @return the end of each range followed by the number of bytes
+  * its part takes
+  */
+ private static int[] chunks(int size)
+ {
+  final int tileCount = size * size;
+  final int digits = Math.max(0, tileCount - 2);
+  int[] buffer = new int[2 * Math.max(1, digits)];
+  int length = 0;
+  for (int from = 0; digits > from || 0 == length;)
+  {
+   int to = from;
+   long count = 1L;
+   while (digits > to && Long.MAX_VALUE / (tileCount - to) >= count)
+    count *= tileCount - to++;
+   buffer[length++] = to;
+   buffer[length++] = (64 - Long.numberOfLeadingZeros(count - 1) + 7) / 8;
+   from = to;
+  }
+  int[] chunks = new int[length];
+  System.arraycopy(buffer, 0, chunks, 0, length);
+  return chunks;
+ }
+
+ private static int varIntLength(int value)
+ {
+  int length = 1;
+  while (0 != (value >>>= 7))
+   length++;
+  return length;
+ }
+
+ private static int putVarInt(byte[] data, int offset, int value)
+ {
+  for (; 0 != (value & ~0x7F); value >>>= 7)
+   data[offset++] = (byte)(value | 0x80);
+  data[offset++] = (byte)value;
+  return offset;
+ }
+
+ /**
+  * Reads a variable-length number at the {@link #cursor}
+  * and moves the cursor past it.
+  */
+ private int getVarInt(byte[] data)
+ {
+  int value = 0;
+  for (int shift = 0;; shift += 7)
+  {
+   if (data.length <= cursor || 28 < shift)
+    throw new IllegalArgumentException("Invalid count in the game state");
+   final int b = data[cursor++];
+   value |= (b & 0x7F) << shift;
+   if (0 <= b)
+    break;
+  }
+  if (0 > value)
+   throw new IllegalArgumentException("Invalid count in the game state");
+  return value;
+ }
+
+ private static void checkCount(int count)
+ {
+  if (0 > count)
+   throw new IllegalArgumentException("Invalid count " + count);
+ }
+
+ private Game.Level level;
+ private BoardState position;
+ private int moveCount;
+ private MoveHistory history = new MoveHistory();
+ /** The offset of the next byte to decode. */
+ private int cursor;
+
+ private static final int[][] CHUNKS = new int[BoardState.MAX_SIZE + 1][];
+
+ static
+ {
+  for (int size = 1; BoardState.MAX_SIZE >= size; size++)
+   CHUNKS[size] = chunks(size);
+ }
+}
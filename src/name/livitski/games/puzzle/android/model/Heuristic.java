@@ -0,0 +1,63 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Estimates the number of moves needed to solve a puzzle.
+ * Implementations must never overestimate that number for
+ * {@link Solver solvers} to find optimal solutions, and must
+ * return zero for solved positions only.
+ * Positions are passed in two arrays: <code>cells</code> holds
+ * tile numbers in the {@link Board#getTileLayout() layout order},
+ * and <code>places</code> holds the position of each tile
+ * indexed by its number. Implementations do not modify these
+ * arrays and must be safe to use from multiple threads.
+ */
+public interface Heuristic
+{
+ /**
+  * Returns the size of boards this heuristic is designed for.
+  */
+ public int getSize();
+
+ /**
+  * Computes the estimate for a position from scratch.
+  * @param cells tile numbers indexed by position
+  * @param places tile positions indexed by tile number
+  * @return the estimated number of moves to solve the puzzle
+  */
+ public int evaluate(int[] cells, int[] places);
+
+ /**
+  * Updates the estimate after a tile has moved.
+  * @param value the estimate before the move
+  * @param cells tile numbers indexed by position after the move
+  * @param places tile positions indexed by tile number after the move
+  * @param tile number of the moved tile
+  * @param from position of the tile before the move, which is
+  * now occupied by the blank tile
+  * @param to position of the tile after the move
+  * @return the estimate for the new position
+  */
+ public int adjust(int value, int[] cells, int[] places, int tile, int from, int to);
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import name.livitski.games.puzzle.android.Application;
+
+/**
+ * Suggests moves for a {@link Game game} in progress. Keeps the latest
+ * plan along with the moves made since it was computed. While the player
+ * follows an optimal plan, hints are answered without a search. When the
+ * player deviates, the old plan with the deviation undone becomes the
+ * starting solution for the next search, which then has to look only for
+ * shorter ones. Searches run on the {@link Application application's}
+ * background threads and keep improving the plan after the hint is
+ * returned, until the next deviation or a {@link #cancel() cancellation}.
+ * Hints on 3x3 boards are looked up in the {@link DistanceTable distance
+ * table} instead, and need a background thread only to load the table.
+ */
+class HintPlanner implements SolutionListener
+{
+ /**
+  * Returns the next move of the best plan for a position
+  * that can be found within a time limit.
+  * @param position the position on the board, which must follow
+  * from the last position requested by {@link #moveMade(Move) moves}
+  * reported since then, unless the planner has been
+  * {@link #cancel() cancelled}
+  * @param timeoutMillis the time limit for a search if one is needed
+  * @param application the application that runs searches
+  * @return the future move, or <code>null</code> in the future
+  * if the puzzle is solved or cannot be solved in time
+  * @throws IllegalArgumentException if the position is unsolvable
+  */
+ Future<Move> request(final BoardState position, final long timeoutMillis, Application application)
+ {
+  if (DistanceTable.SIZE == position.getSize())
+   return lookUp(position, application);
+  final AnytimeSolver.Task search;
+  synchronized (this)
+  {
+   List<Move> plan = null == base ? null : getPlan();
+   if (null != plan && !solves(position, plan))
+   {
+    cancel();
+    plan = null;
+   }
+   if (position.isSolved() || null != plan && baseOptimal && 0 == detour)
+    return completed(position.isSolved() ? null : plan.get(0));
+   if (null != plan && 0 == detour && !task.isDone())
+   {
+    // the player follows the plan that is still being improved
+    final AnytimeSolver.Task running = task;
+    final Move planned = plan.get(0);
+    return application.submitBackgroundTask(new Callable<Move>() {
+     public Move call() throws InterruptedException
+     {
+      running.awaitCompletion(timeoutMillis);
+      synchronized (HintPlanner.this)
+      {
+       // the plan may have been improved for the same position
+       List<Move> plan = null == base ? null : getPlan();
+       return null != plan && solves(position, plan) ? plan.get(0) : planned;
+      }
+     }
+    });
+   }
+   if (null != task)
+    task.cancel();
+   base = position;
+   baseOptimal = false;
+   trailLength = 0;
+   load(plan);
+   task = search = solver.prepare(position, plan, this);
+  }
+  application.submitBackgroundTask(search);
+  return application.submitBackgroundTask(new Callable<Move>() {
+   public Move call() throws InterruptedException
+   {
+    Solution best = search.awaitCompletion(timeoutMillis);
+    return null == best || 0 == best.getLength() ? null : best.getMoves().get(0);
+   }
+  });
+ }
+
+ /**
+  * Updates the plan after a move on the board.
+  */
+ synchronized void moveMade(Move move)
+ {
+  if (null == base)
+   return;
+  if (trail.length == trailLength)
+   trail = grow(trail);
+  trail[trailLength++] = move;
+  advance(move);
+ }
+
+ /**
+  * Stops the search in progress, if any, and forgets the plan.
+  */
+ synchronized void cancel()
+ {
+  if (null != task)
+  {
+   task.cancel();
+   task = null;
+  }
+  base = null;
+  stepCount = trailLength = detour = 0;
+ }
+
+ public synchronized void solutionFound(Solution solution)
+ {
+  if (!solution.getStart().equals(base))
+   return;
+  baseOptimal = solution.isOptimal();
+  load(solution.getMoves());
+  for (int i = 0; trailLength > i; i++)
+   advance(trail[i]);
+ }
+
+ HintPlanner(Heuristic heuristic)
+ {
+  this.solver = new AnytimeSolver(heuristic);
+ }
+
+ private List<Move> getPlan()
+ {
+  List<Move> plan = new ArrayList<Move>(stepCount);
+  for (int i = stepCount; 0 < i--;)
+   plan.add(steps[i]);
+  return plan;
+ }
+
+ private void load(List<Move> plan)
+ {
+  stepCount = detour = 0;
+  if (null == plan)
+   return;
+  if (steps.length < plan.size())
+   steps = new Move[plan.size()];
+  for (int i = plan.size(); 0 < i--;)
+   steps[stepCount++] = plan.get(i);
+ }
+
+ /**
+  * Makes the plan start at the position that follows a move:
+  * drops the first step if it is that move, or prepends a move
+  * that undoes it otherwise.
+  */
+ private void advance(Move move)
+ {
+  if (0 < stepCount && move == steps[stepCount - 1])
+  {
+   stepCount--;
+   if (0 < detour)
+    detour--;
+  }
+  else
+  {
+   if (steps.length == stepCount)
+    steps = grow(steps);
+   steps[stepCount++] = move.opposite();
+   detour++;
+  }
+ }
+
+ private static boolean solves(BoardState position, List<Move> plan)
+ {
+  for (Move move : plan)
+   if (position.isPermitted(move))
+    position = position.move(move);
+   else
+    return false;
+  return position.isSolved();
+ }
+
+ private static Future<Move> lookUp(final BoardState position, Application application)
+ {
+  Solver.checkSolvable(position);
+  if (DistanceTable.isLoaded())
+   return completed(DistanceTable.getInstance().nextMove(position));
+  return application.submitBackgroundTask(new Callable<Move>() {
+   public Move call()
+   {
+    return DistanceTable.getInstance().nextMove(position);
+   }
+  });
+ }
+
+ private static Future<Move> completed(final Move move)
+ {
+  FutureTask<Move> result = new FutureTask<Move>(new Callable<Move>() {
+   public Move call()
+   {
+    return move;
+   }
+  });
+  result.run();
+  return result;
+ }
+
+ private static Move[] grow(Move[] array)
+ {
+  Move[] grown = new Move[Math.max(INITIAL_CAPACITY, array.length * 2)];
+  System.arraycopy(array, 0, grown, 0, array.length);
+  return grown;
+ }
+
+ private static final int INITIAL_CAPACITY = 64;
+
+ private final AnytimeSolver solver;
+ private AnytimeSolver.Task task;
+ /** The position of the latest search, or <code>null</code> if there is none. */
+ private BoardState base;
+ private boolean baseOptimal;
+ /** Moves made since the latest search started. */
+ private Move[] trail = new Move[INITIAL_CAPACITY];
+ private int trailLength;
+ /** The plan for the current position, last step first. */
+ private Move[] steps = new Move[INITIAL_CAPACITY];
+ private int stepCount;
+ /** The number of steps that undo deviations from the base plan. */
+ private int detour;
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Finds optimal solutions using iterative-deepening A* search.
+ * For the explanation of this algorithm, please refer to:
+ * Richard E. Korf, Depth-first iterative-deepening: an optimal
+ * admissible tree search, Artificial Intelligence 27 (1985), 97-109.
+ */
+public class IDAStarSolver extends Solver
+{
+ /**
+  * Returns the heuristic that guides this solver.
+  */
+ public Heuristic getHeuristic()
+ {
+  return heuristic;
+ }
+
+ @Override
+ public Solution solve(BoardState start)
+ {
+  checkSolvable(start);
+  final long started = System.nanoTime();
+  final TranspositionTable table = this.table;
+  if (null != table)
+   // entries of earlier positions give way to this one's first
+   table.nextGeneration();
+  DepthFirstSearch search = new DepthFirstSearch(heuristic, start);
+  search.setTranspositionTable(table);
+  for (int bound = search.getEstimate();;)
+  {
+   bound = search.search(bound);
+   if (DepthFirstSearch.FOUND == bound)
+    break;
+   if (DepthFirstSearch.EXHAUSTED == bound)
+    throw new IllegalStateException("Search space exhausted for " + start);
+  }
+  return new Solution(start, search.getPath(), search.getNodeCount(),
+    System.nanoTime() - started);
+ }
+
+ /**
+  * Makes this solver cache lower bounds on the number of moves left
+  * from positions it visits, which lets it skip positions reached
+  * again, in the same or later searches. The table may be shared by
+  * solvers running in parallel on boards of the same size.
+  * Every node expanded probes the table, so it pays off when
+  * the table fits into processor caches, or when the heuristic
+  * is expensive to compute. Each solution starts a
+  * {@link TranspositionTable#nextGeneration() new generation}
+  * of the table, so that entries of earlier positions are
+  * replaced first.
+  * @param table the cache or <code>null</code> to solve without it
+  */
+ public void setTranspositionTable(TranspositionTable table)
+ {
+  this.table = table;
+ }
+
+ /**
+  * Creates a solver guided by a specific heuristic.
+  * @param heuristic an admissible heuristic for the boards
+  * this solver will handle
+  */
+ public IDAStarSolver(Heuristic heuristic)
+ {
+  this.heuristic = heuristic;
+ }
+
+ /**
+  * Creates a solver for boards of specific size guided by
+  * {@link ManhattanDistance Manhattan distance} with linear
+  * conflicts.
+  * @param size the number of rows (and columns) on the board
+  */
+ public IDAStarSolver(int size)
+ {
+  this(new ManhattanDistance(size, true));
+ }
+
+ private final Heuristic heuristic;
+ private volatile TranspositionTable table;
+}
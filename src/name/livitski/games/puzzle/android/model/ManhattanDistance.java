@@ -0,0 +1,321 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Estimates the number of moves left as the sum of distances
+ * each tile has to travel to its target place, optionally
+ * adding the moves imposed by linear conflicts. Two tiles are in
+ * a linear conflict when they are in the row (or column) they
+ * belong to, but in the reverse order, so one of them has to leave
+ * that row (or column) and come back later.
+ * For the explanation of the linear conflict heuristic, please refer to:
+ * Othar Hansson, Andrew Mayer, Moti Yung, Criticizing Solutions to
+ * Relaxed Models Yields Powerful Admissible Heuristics, 1992.
+ */
+public class ManhattanDistance implements Heuristic
+{
+ public int getSize()
+ {
+  return size;
+ }
+
+ /**
+  * Tells whether this heuristic accounts for linear conflicts.
+  */
+ public boolean isCountingConflicts()
+ {
+  return null != conflicts;
+ }
+
+ public int evaluate(int[] cells, int[] places)
+ {
+  int value = distance(places);
+  if (null != conflicts)
+   value += 2 * conflicts(cells);
+  return value;
+ }
+
+ public int adjust(int value, int[] cells, int[] places, int tile, int from, int to)
+ {
+  value = adjustDistance(value, tile, from, to);
+  if (null != conflicts)
+   value += 2 * adjustConflicts(0, cells, tile, from, to);
+  return value;
+ }
+
+ /**
+  * Updates the {@link #distance(int[]) distance} after a tile moves.
+  * @param distance the distance before the move
+  * @param tile number of the tile that has moved
+  * @param from position of that tile before the move
+  * @param to position of that tile after the move
+  * @return the distance after the move
+  */
+ public int adjustDistance(int distance, int tile, int from, int to)
+ {
+  return distance + distance(tile, to) - distance(tile, from);
+ }
+
+ /**
+  * Updates the number of {@link #conflicts(int[]) conflicting tiles}
+  * after a tile moves.
+  * @param count the number of conflicting tiles before the move
+  * @param cells tile numbers indexed by position after the move
+  * @param tile number of the tile that has moved
+  * @param from position of that tile before the move
+  * @param to position of that tile after the move
+  * @return the number of conflicting tiles after the move
+  * @throws IllegalStateException if this heuristic does not
+  * {@link #isCountingConflicts() count linear conflicts}
+  */
+ public int adjustConflicts(int count, int[] cells, int tile, int from, int to)
+ {
+  if (null == conflicts)
+   throw new IllegalStateException("Linear conflicts are not counted by " + this);
+  // moving a tile past the blank does not change the order of other
+  // tiles in any line, so only the tile's target row or column may
+  // change when the tile enters or leaves it
+  int start = -1, stride;
+  if (cellRows[from] == cellRows[to])
+  {
+   stride = size;
+   final int line = targetColumns[tile];
+   if (line == cellColumns[from] || line == cellColumns[to])
+    start = line;
+  }
+  else
+  {
+   stride = 1;
+   final int line = targetRows[tile];
+   if (line == cellRows[from] || line == cellRows[to])
+    start = line * size;
+  }
+  if (0 <= start)
+   count += lineConflicts(cells, start, stride, tile, from, to, false)
+     - lineConflicts(cells, start, stride, tile, from, to, true);
+  return count;
+ }
+
+ /**
+  * Returns the sum of distances of non-blank tiles from
+  * their target places.
+  * @param places tile positions indexed by tile number
+  */
+ public int distance(int[] places)
+ {
+  int sum = 0;
+  for (int tile = 1; tileCount > tile; tile++)
+   sum += distance(tile, places[tile]);
+  return sum;
+ }
+
+ /**
+  * Returns the number of tiles that have to leave their target rows
+  * or columns to resolve all linear conflicts. Each such tile adds
+  * two moves to the {@link #distance(int[]) distance}.
+  * @param cells tile numbers indexed by position
+  * @throws IllegalStateException if this heuristic does not
+  * {@link #isCountingConflicts() count linear conflicts}
+  */
+ public int conflicts(int[] cells)
+ {
+  if (null == conflicts)
+   throw new IllegalStateException("Linear conflicts are not counted by " + this);
+  int sum = 0;
+  for (int line = 0; size > line; line++)
+   sum += lineConflicts(cells, line * size, 1, 0, -1, -1, false)
+   	+ lineConflicts(cells, line, size, 0, -1, -1, false);
+  return sum;
+ }
+
+ @Override
+ public String toString()
+ {
+  return (null == conflicts ? "Manhattan distance" : "Manhattan distance with linear conflicts")
+  	+ " on a board of size " + size;
+ }
+
+ /**
+  * Creates the heuristic for boards of specific size.
+  * @param size the number of rows (and columns) on the board
+  * @param linearConflicts whether to account for linear conflicts
+  * @throws IllegalArgumentException if the size is invalid, or
+  * is too large for counting linear conflicts
+  */
+ public ManhattanDistance(int size, boolean linearConflicts)
+ {
+  this(size, solvedCells(size), linearConflicts);
+ }
+
+ /**
+  * Largest board size that supports
+  * {@link #isCountingConflicts() counting linear conflicts}.
+  */
+ public static final int MAX_CONFLICT_SIZE = 6;
+
+ /**
+  * Creates the heuristic that estimates distance to an arbitrary
+  * arrangement of tiles.
+  * @param goal tile numbers of the goal arrangement indexed by position
+  */
+ ManhattanDistance(int size, int[] goal, boolean linearConflicts)
+ {
+  if (0 >= size || Integer.MAX_VALUE <= (long)size * size)
+   throw new IllegalArgumentException("Unsupported board size " + size);
+  if (goal.length != size * size)
+   throw new IllegalArgumentException("Goal arrangement does not match the board size " + size);
+  if (linearConflicts && MAX_CONFLICT_SIZE < size)
+   throw new IllegalArgumentException("Board of size " + size
+     + " is too large to count linear conflicts");
+  this.size = size;
+  this.tileCount = size * size;
+  this.targetRows = new int[tileCount];
+  this.targetColumns = new int[tileCount];
+  this.cellRows = new int[tileCount];
+  this.cellColumns = new int[tileCount];
+  for (int place = 0; tileCount > place; place++)
+  {
+   final int tile = goal[place];
+   targetRows[tile] = cellRows[place] = place / size;
+   targetColumns[tile] = cellColumns[place] = place % size;
+  }
+  this.conflicts = linearConflicts ? conflictTable(size) : null;
+ }
+
+ private int distance(int tile, int place)
+ {
+  return Math.abs(cellRows[place] - targetRows[tile])
+  	+ Math.abs(cellColumns[place] - targetColumns[tile]);
+ }
+
+ /**
+  * Returns the number of conflicting tiles in a row or column.
+  * @param cells tile numbers indexed by position
+  * @param start position of the first cell in the line
+  * @param stride distance between positions of adjacent cells
+  * in the line: <code>1</code> for a row, <code>size</code> for
+  * a column
+  * @param tile number of a tile that has moved
+  * @param from position of that tile before the move
+  * @param to position of that tile after the move
+  * @param before whether to count conflicts as they were before
+  * the move
+  */
+ private int lineConflicts(int[] cells, int start, int stride,
+   int tile, int from, int to, boolean before)
+ {
+  final boolean row = 1 == stride;
+  final int line = row ? start / size : start;
+  final int radix = size + 1;
+  int index = 0;
+  for (int i = 0, cell = start; size > i; i++, cell += stride)
+  {
+   int number = cells[cell];
+   if (before)
+   {
+    if (cell == from)
+     number = tile;
+    else if (cell == to)
+     number = 0;
+   }
+   int code = size;
+   if (0 != number)
+   {
+    if (row && line == targetRows[number])
+     code = targetColumns[number];
+    else if (!row && line == targetColumns[number])
+     code = targetRows[number];
+   }
+   index = index * radix + code;
+  }
+  return conflicts[index];
+ }
+
+ /**
+  * Builds a table of conflicting tile counts for all possible lines.
+  * Each cell of a line is coded with the target position of its tile
+  * within that line, or with the line's length if the tile belongs
+  * elsewhere. The number of tiles that have to leave the line is
+  * the number of tiles that belong there minus the length of the
+  * longest increasing subsequence of their codes.
+  */
+ private static byte[] conflictTable(int size)
+ {
+  synchronized (CONFLICT_TABLES)
+  {
+   byte[] table = CONFLICT_TABLES[size];
+   if (null != table)
+    return table;
+   final int radix = size + 1;
+   int length = 1;
+   for (int i = 0; size > i; i++)
+    length *= radix;
+   table = new byte[length];
+   int[] codes = new int[size];
+   int[] ends = new int[size];
+   for (int index = 0; length > index; index++)
+   {
+    int rest = index;
+    for (int i = size; 0 < i--;)
+    {
+     codes[i] = rest % radix;
+     rest /= radix;
+    }
+    int belonging = 0, increasing = 0;
+    for (int i = 0; size > i; i++)
+    {
+     final int code = codes[i];
+     if (size == code)
+      continue;
+     belonging++;
+     int pos = 0;
+     while (pos < increasing && ends[pos] < code)
+      pos++;
+     ends[pos] = code;
+     if (pos == increasing)
+      increasing++;
+    }
+    table[index] = (byte)(belonging - increasing);
+   }
+   return CONFLICT_TABLES[size] = table;
+  }
+ }
+
+ static int[] solvedCells(int size)
+ {
+  if (0 >= size || Integer.MAX_VALUE <= (long)size * size)
+   throw new IllegalArgumentException("Unsupported board size " + size);
+  final int tileCount = size * size;
+  int[] cells = new int[tileCount];
+  for (int i = 1; tileCount > i; i++)
+   cells[i - 1] = i;
+  return cells;
+ }
+
+ private final int size, tileCount;
+ private final int[] targetRows, targetColumns, cellRows, cellColumns;
+ private final byte[] conflicts;
+
+ private static final byte[][] CONFLICT_TABLES = new byte[MAX_CONFLICT_SIZE + 1][];
+}
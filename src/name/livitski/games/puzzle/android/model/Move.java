@@ -49,6 +49,51 @@ public enum Move
   return amount;
  }
 
+ /**
+  * Returns the move in the opposite direction, which
+  * cancels the effect of this move.
+  */
+ public Move opposite()
+ {
+  return VALUES[ordinal() ^ 2];
+ }
+
+ /**
+  * Returns the move that shifts the blank tile by specific offsets.
+  * @throws IllegalArgumentException if no move has these offsets
+  */
+ public static Move valueOf(int rowOffset, int columnOffset)
+ {
+  if (0 == rowOffset)
+   switch (columnOffset)
+   {
+   case -1:
+    return LEFT;
+   case 1:
+    return RIGHT;
+   }
+  else if (0 == columnOffset)
+   switch (rowOffset)
+   {
+   case -1:
+    return UP;
+   case 1:
+    return DOWN;
+   }
+  throw new IllegalArgumentException("No move shifts the blank tile by "
+    + rowOffset + " row(s) and " + columnOffset + " column(s)");
+ }
+
+ /**
+  * Returns the move with specific {@link #ordinal() ordinal number}.
+  * Unlike {@link #values()}, does not copy the array of moves.
+  * @throws ArrayIndexOutOfBoundsException if the ordinal is invalid
+  */
+ public static Move valueOf(int ordinal)
+ {
+  return VALUES[ordinal];
+ }
+
  @Override
  public String toString()
  {
@@ -63,4 +108,7 @@ public enum Move
 
  private boolean horizontal; 
  private int amount; 
+
+ // the order of constants above makes opposite moves differ in the second bit
+ private static final Move[] VALUES = values();
 }
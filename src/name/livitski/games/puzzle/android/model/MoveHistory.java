@@ -0,0 +1,183 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Records moves of the blank tile made in a game, so that they can be
+ * undone and redone. Each move takes 2 bits, its
+ * {@link Move#ordinal() ordinal number}, packed 32 to a <code>long</code>
+ * in an array that doubles when full. The history keeps the moves
+ * undone last until a new move replaces them. Instances of this class
+ * are not thread-safe.
+ */
+public class MoveHistory
+{
+ /** Returns the number of moves recorded, including those undone. */
+ public int getSize()
+ {
+  return size;
+ }
+
+ /**
+  * Returns the number of moves that lead to the current position,
+  * which is less than the {@link #getSize() size} when some moves
+  * have been undone.
+  */
+ public int getPosition()
+ {
+  return position;
+ }
+
+ /**
+  * Returns a recorded move.
+  * @throws IndexOutOfBoundsException if there is no such move
+  */
+ public Move get(int index)
+ {
+  if (0 > index || size <= index)
+   throw new IndexOutOfBoundsException("Invalid move index " + index
+     + ", history has " + size + " move(s)");
+  return Move.valueOf((int)(words[index >>> 5] >>> (index << 1)) & 3);
+ }
+
+ /**
+  * Records a move made at the current position, dropping
+  * the moves undone before it.
+  */
+ public void add(Move move)
+ {
+  if (Integer.MAX_VALUE == position)
+   throw new IllegalStateException("Move history is full");
+  final int word = position >>> 5;
+  if (words.length == word)
+  {
+   long[] grown = new long[Math.max(INITIAL_CAPACITY, words.length * 2)];
+   System.arraycopy(words, 0, grown, 0, words.length);
+   words = grown;
+  }
+  final int shift = position << 1;
+  words[word] = words[word] & ~(3L << shift) | (long)move.ordinal() << shift;
+  size = ++position;
+ }
+
+ /** Tells whether there is a move to {@link #undo() undo}. */
+ public boolean canUndo()
+ {
+  return 0 < position;
+ }
+
+ /**
+  * Steps back over the last move made and returns the move
+  * that reverts it.
+  * @throws IllegalStateException if there is no move to undo
+  */
+ public Move undo()
+ {
+  if (0 == position)
+   throw new IllegalStateException("No moves to undo");
+  return get(--position).opposite();
+ }
+
+ /** Tells whether there is a move to {@link #redo() redo}. */
+ public boolean canRedo()
+ {
+  return size > position;
+ }
+
+ /**
+  * Steps forward over the move undone last and returns it.
+  * @throws IllegalStateException if there is no move to redo
+  */
+ public Move redo()
+ {
+  if (size == position)
+   throw new IllegalStateException("No moves to redo");
+  return get(position++);
+ }
+
+ /** Forgets all moves. */
+ public void clear()
+ {
+  size = position = 0;
+ }
+
+ /**
+  * Returns the number of bytes {@link #write(byte[], int) written}
+  * for the recorded moves.
+  */
+ public int getByteCount()
+ {
+  return (size + 3) >>> 2;
+ }
+
+ /**
+  * Packs the recorded moves into an array, four to a byte, lower
+  * bits first.
+  * @param data the array that receives the moves
+  * @param offset the index of the first byte to write
+  * @return the index that follows the last byte written
+  */
+ public int write(byte[] data, int offset)
+ {
+  final int count = getByteCount();
+  for (int i = 0; count > i; i++)
+   data[offset++] = (byte)(words[i >>> 3] >>> ((i & 7) << 3));
+  return offset;
+ }
+
+ /**
+  * Replaces the contents of this history with moves
+  * {@link #write(byte[], int) written} earlier.
+  * @param data the array with the moves
+  * @param offset the index of the first byte to read
+  * @param size the number of moves to read
+  * @param position the number of moves that lead to the
+  * current position
+  * @throws IllegalArgumentException if the position is
+  * not within the history
+  */
+ public void read(byte[] data, int offset, int size, int position)
+ {
+  if (0 > size || 0 > position || size < position)
+   throw new IllegalArgumentException("Invalid position " + position
+     + " in a history of " + size + " move(s)");
+  final int count = (size + 3) >>> 2;
+  if (data.length < offset + count)
+   throw new IllegalArgumentException("Expected " + count
+     + " byte(s) of moves, got " + (data.length - offset));
+  if (words.length << 3 < count)
+   words = new long[(count + 7) >>> 3];
+  for (int i = 0; count > i; i++)
+  {
+   final int shift = (i & 7) << 3;
+   words[i >>> 3] = words[i >>> 3] & ~(0xFFL << shift) | (data[offset + i] & 0xFFL) << shift;
+  }
+  this.size = size;
+  this.position = position;
+ }
+
+ private static final int INITIAL_CAPACITY = 16;
+
+ private long[] words = new long[INITIAL_CAPACITY];
+ private int size, position;
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps a game in progress on disk as a snapshot of its
+ * {@link GameStateCodec state} followed by a journal of moves made
+ * since then, so that the game can be {@link #recover(GameStateCodec)
+ * recovered} after a crash without saving the whole state on every move.
+ * The journal is a small file mapped into memory, which takes one byte
+ * per move, undo or redo, so recording a move is a single store into
+ * memory that the operating system writes out even if the process
+ * crashes. When the journal fills up, the state it leads to becomes the
+ * next snapshot and the journal starts over.
+ * <p>
+ * Both files carry an epoch number that grows with each snapshot. A new
+ * snapshot is written to a temporary file, forced to disk and renamed
+ * over the old one. Only then is the journal cleared and stamped with the
+ * new epoch, so a journal of an older epoch than the snapshot is known to
+ * be included in it and is ignored on recovery.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+public class MoveJournal
+{
+ /**
+  * Reads the latest snapshot and replays the journal after it.
+  * @param codec the codec that receives the recovered state,
+  * including its move history
+  * @return whether there was a game to recover
+  * @throws IOException if there is an error reading the snapshot
+  * or it is not valid
+  */
+ public boolean recover(GameStateCodec codec)
+ 	throws IOException
+ {
+  final byte[] snapshot = readSnapshot();
+  if (null == snapshot)
+   return false;
+  try
+  {
+   codec.decode(snapshot);
+  }
+  catch (IllegalArgumentException invalid)
+  {
+   throw (IOException)new IOException("Invalid snapshot " + snapshotFile)
+   	.initCause(invalid);
+  }
+  BoardState position = codec.getPosition();
+  int moveCount = codec.getMoveCount();
+  final MoveHistory history = codec.getHistory();
+  for (int i = HEADER_LENGTH; length > i; i++)
+  {
+   final int entry = journal.get(i);
+   Move move;
+   if (MOVE > entry || REDO < entry)
+    move = null;
+   else if (UNDO == entry)
+    move = history.canUndo() ? history.undo() : null;
+   else if (REDO == entry)
+    move = history.canRedo() ? history.redo() : null;
+   else
+   {
+    move = Move.valueOf(entry - MOVE);
+    history.add(move);
+   }
+   if (null == move || !position.isPermitted(move))
+    throw new IOException("Invalid entry " + entry + " at offset " + i
+      + " of journal " + journalFile);
+   position = position.move(move);
+   moveCount++;
+  }
+  codec.setPosition(position);
+  codec.setMoveCount(moveCount);
+  mirror.decode(codec.encode());
+  started = true;
+  return true;
+ }
+
+ /**
+  * Starts journaling a game from a state, which becomes the snapshot.
+  * @throws IOException if there is an error saving the snapshot
+  */
+ public void begin(GameStateCodec state)
+ 	throws IOException
+ {
+  final byte[] snapshot = state.encode();
+  writeSnapshot(snapshot);
+  mirror.decode(snapshot);
+  started = true;
+ }
+
+ /**
+  * Records a new move made in the game.
+  * @throws IOException if the journal was full and there
+  * was an error saving the snapshot
+  */
+ public void moveMade(Move move)
+ 	throws IOException
+ {
+  if (!started)
+   return;
+  mirror.getHistory().add(move);
+  apply(move, MOVE + move.ordinal());
+ }
+
+ /**
+  * Records a move undone in the game.
+  * @throws IOException if the journal was full and there
+  * was an error saving the snapshot
+  */
+ public void moveUndone()
+ 	throws IOException
+ {
+  if (started)
+   apply(mirror.getHistory().undo(), UNDO);
+ }
+
+ /**
+  * Records a move redone in the game.
+  * @throws IOException if the journal was full and there
+  * was an error saving the snapshot
+  */
+ public void moveRedone()
+ 	throws IOException
+ {
+  if (started)
+   apply(mirror.getHistory().redo(), REDO);
+ }
+
+ /**
+  * Forces the recorded moves to disk, which protects them from
+  * a system crash rather than a crash of the process only.
+  */
+ public void flush()
+ {
+  journal.force();
+ }
+
+ /**
+  * Forgets the game recorded, so that there is nothing to
+  * {@link #recover(GameStateCodec) recover} until another game
+  * {@link #begin(GameStateCodec) begins}. Moves reported until
+  * then are ignored.
+  * @throws IOException if the snapshot cannot be deleted
+  */
+ public void discard()
+ 	throws IOException
+ {
+  started = false;
+  // without the snapshot, the journal is ignored even if clearing it fails
+  if (snapshotFile.exists() && !snapshotFile.delete())
+   throw new IOException("Could not delete snapshot " + snapshotFile);
+  clearJournal();
+ }
+
+ /**
+  * Closes the journal file. The memory mapping stays in place until
+  * this object is garbage collected.
+  * @throws IOException if there is an error closing the file
+  */
+ public void close()
+ 	throws IOException
+ {
+  started = false;
+  journal.force();
+  channel.close();
+ }
+
+ /**
+  * Opens the journal and the snapshot in a directory, creating
+  * the directory if necessary.
+  * @throws IOException if the directory or the journal cannot be
+  * created or opened
+  */
+ public MoveJournal(File directory)
+ 	throws IOException
+ {
+  if (!directory.isDirectory() && !directory.mkdirs())
+   throw new IOException("Could not create directory " + directory);
+  this.journalFile = new File(directory, JOURNAL_FILE);
+  this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+  this.channel = new RandomAccessFile(journalFile, "rw").getChannel();
+  try
+  {
+   this.journal = channel.map(FileChannel.MapMode.READ_WRITE, 0L, JOURNAL_SIZE);
+   byte[] snapshot = null;
+   try
+   {
+    snapshot = readSnapshot();
+   }
+   catch (IOException invalid)
+   {
+    // a damaged snapshot is replaced when the game begins
+   }
+   if (null != snapshot && MAGIC == journal.getInt(0) && VERSION == journal.get(4)
+     && epoch == journal.getInt(5))
+   {
+    // append to the journal of the snapshot's epoch
+    int length = HEADER_LENGTH;
+    while (JOURNAL_SIZE > length && 0 != journal.get(length))
+     length++;
+    this.length = length;
+   }
+   else
+    clearJournal();
+  }
+  catch (IOException failure)
+  {
+   channel.close();
+   throw failure;
+  }
+ }
+
+ /** Name of the journal file in the directory. */
+ public static final String JOURNAL_FILE = "moves.journal";
+ /** Name of the snapshot file in the directory. */
+ public static final String SNAPSHOT_FILE = "game.snapshot";
+
+ private void apply(Move move, int entry)
+ 	throws IOException
+ {
+  mirror.setPosition(mirror.getPosition().move(move));
+  mirror.setMoveCount(mirror.getMoveCount() + 1);
+  if (JOURNAL_SIZE == length)
+   // the mirror already has this move
+   writeSnapshot(mirror.encode());
+  else
+   journal.put(length++, (byte)entry);
+ }
+
+ /**
+  * Reads the snapshot and its epoch.
+  * @return the state in the snapshot or <code>null</code> if there
+  * is no snapshot
+  */
+ private byte[] readSnapshot()
+ 	throws IOException
+ {
+  if (!snapshotFile.exists())
+   return null;
+  DataInputStream in = new DataInputStream(new FileInputStream(snapshotFile));
+  try
+  {
+   if (MAGIC != in.readInt() || VERSION != in.readByte())
+    throw new IOException(snapshotFile + " is not a game snapshot");
+   final int epoch = in.readInt();
+   final int length = in.readInt();
+   if (0 > length || MAX_STATE_LENGTH < length)
+    throw new IOException("Invalid length " + length + " of snapshot " + snapshotFile);
+   byte[] state = new byte[length];
+   in.readFully(state);
+   if (0 <= in.read())
+    throw new IOException("Snapshot " + snapshotFile + " is longer than expected");
+   this.epoch = epoch;
+   return state;
+  }
+  finally
+  {
+   in.close();
+  }
+ }
+
+ /**
+  * Replaces the snapshot with a state of the next epoch, then starts
+  * the journal of that epoch.
+  */
+ private void writeSnapshot(byte[] state)
+ 	throws IOException
+ {
+  final int epoch = this.epoch + 1;
+  File temp = new File(snapshotFile.getPath() + ".tmp");
+  FileOutputStream out = new FileOutputStream(temp);
+  try
+  {
+   ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_LENGTH);
+   header.putInt(MAGIC).put(VERSION).putInt(epoch).putInt(state.length);
+   out.write(header.array());
+   out.write(state);
+   out.getFD().sync();
+  }
+  finally
+  {
+   out.close();
+  }
+  if (!temp.renameTo(snapshotFile))
+   throw new IOException("Could not rename " + temp + " to " + snapshotFile);
+  this.epoch = epoch;
+  clearJournal();
+ }
+
+ private void clearJournal()
+ {
+  for (int i = HEADER_LENGTH; length > i; i++)
+   journal.put(i, (byte)0);
+  journal.force();
+  journal.putInt(0, MAGIC).put(4, VERSION).putInt(5, epoch);
+  journal.force();
+  length = HEADER_LENGTH;
+ }
+
+ private final File journalFile, snapshotFile;
+ private final FileChannel channel;
+ private final MappedByteBuffer journal;
+ /** Offset that follows the last entry in the journal. */
+ private int length = JOURNAL_SIZE;
+ private int epoch;
+ /** The state that the journal leads to. */
+ private final GameStateCodec mirror = new GameStateCodec();
+ private boolean started;
+
+ private static final int MAGIC = 0x4E504D4A; // "NPMJ"
+ private static final byte VERSION = 1;
+ private static final int HEADER_LENGTH = 9;
+ private static final int SNAPSHOT_HEADER_LENGTH = 13;
+ private static final int JOURNAL_SIZE = 8192;
+ private static final int MAX_STATE_LENGTH = 1 << 24;
+ private static final int MOVE = 1;
+ private static final int UNDO = MOVE + 4;
+ private static final int REDO = UNDO + 1;
+}
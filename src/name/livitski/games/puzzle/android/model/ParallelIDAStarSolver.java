@@ -0,0 +1,305 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds optimal solutions using iterative-deepening A* search spread
+ * over multiple threads. Each iteration splits the search tree at a
+ * shallow depth into many small work units that are queued to an
+ * executor, so that idle threads keep taking units from the queue
+ * until the iteration is over. Once a thread reaches the solved
+ * position, the solution is proven optimal and all other units are
+ * cancelled. Solutions have the same length as those of
+ * {@link IDAStarSolver}, though they may consist of different moves.
+ */
+public class ParallelIDAStarSolver extends Solver
+{
+ /**
+  * Returns the heuristic that guides this solver.
+  */
+ public Heuristic getHeuristic()
+ {
+  return heuristic;
+ }
+
+ @Override
+ public Solution solve(BoardState start)
+ {
+  checkSolvable(start);
+  final long started = System.nanoTime();
+  final AtomicBoolean stop = new AtomicBoolean();
+  final TranspositionTable table = this.table;
+  if (null != table)
+   table.nextGeneration();
+  DepthFirstSearch splitter = new DepthFirstSearch(heuristic, start);
+  long nodeCount = 0L;
+  Move[] solution = null;
+  for (int bound = splitter.getEstimate(); null == solution;)
+  {
+   if (0 == splitter.getEstimate())
+   {
+    solution = new Move[0];
+    break;
+   }
+   // split the tree deep enough to keep all threads busy
+   Split split = null;
+   for (int depth = 1; MAX_SPLIT_DEPTH >= depth; depth++)
+   {
+    split = new Split(depth, bound);
+    split.collect(splitter);
+    if (null != split.solution || 0 == split.count
+      || split.count >= unitsPerThread * parallelism)
+     break;
+   }
+   nodeCount += split.nodeCount;
+   if (null != split.solution)
+   {
+    solution = split.solution;
+    break;
+   }
+   List<Future<Integer>> results = new ArrayList<Future<Integer>>(split.count);
+   List<Unit> units = new ArrayList<Unit>(split.count);
+   for (int i = 0; split.count > i; i++)
+   {
+    Unit unit = new Unit(start, split.prefixes[i], split.depth, bound, stop);
+    units.add(unit);
+    results.add(executor.submit(unit));
+   }
+   int next = split.next;
+   try
+   {
+    for (int i = 0; results.size() > i; i++)
+    {
+     Future<Integer> result = results.get(i);
+     int value;
+     try
+     {
+      value = result.get();
+     }
+     catch (CancellationException cancelled)
+     {
+      continue;
+     }
+     final Unit unit = units.get(i);
+     nodeCount += unit.nodeCount;
+     if (DepthFirstSearch.FOUND == value && null == solution)
+     {
+      solution = unit.solution;
+      for (Future<Integer> other : results)
+       other.cancel(false);
+     }
+     else if (DepthFirstSearch.STOPPED != value && value < next)
+      next = value;
+    }
+   }
+   catch (InterruptedException interrupt)
+   {
+    stop.set(true);
+    for (Future<Integer> result : results)
+     result.cancel(false);
+    Thread.currentThread().interrupt();
+    throw new IllegalStateException("Interrupted while solving " + start, interrupt);
+   }
+   catch (ExecutionException failure)
+   {
+    stop.set(true);
+    for (Future<Integer> result : results)
+     result.cancel(false);
+    throw new IllegalStateException("Search failed for " + start, failure.getCause());
+   }
+   if (null == solution)
+   {
+    if (DepthFirstSearch.EXHAUSTED == next)
+     throw new IllegalStateException("Search space exhausted for " + start);
+    bound = next;
+   }
+  }
+  return new Solution(start, solution, nodeCount, System.nanoTime() - started);
+ }
+
+ /**
+  * Creates a solver that runs its work units on an executor.
+  * The executor is not shut down by the solver.
+  * @param heuristic an admissible heuristic for the boards
+  * this solver will handle
+  * @param executor the executor that runs work units, which
+  * must not be used by the threads that call this solver
+  * @param parallelism the number of threads available to
+  * the solver, used to decide how finely to split the search
+  */
+ public ParallelIDAStarSolver(Heuristic heuristic, ExecutorService executor, int parallelism)
+ {
+  if (0 >= parallelism)
+   throw new IllegalArgumentException("parallelism = " + parallelism);
+  this.heuristic = heuristic;
+  this.executor = executor;
+  this.parallelism = parallelism;
+ }
+
+ /**
+  * Sets the number of work units per thread the search
+  * is split into on each iteration. More units balance
+  * the load better at the cost of more overhead.
+  */
+ public void setUnitsPerThread(int unitsPerThread)
+ {
+  if (0 >= unitsPerThread)
+   throw new IllegalArgumentException("unitsPerThread = " + unitsPerThread);
+  this.unitsPerThread = unitsPerThread;
+ }
+
+ /**
+  * Makes work units of this solver share a cache of lower bounds
+  * on the number of moves left from positions they visit.
+  * @param table the cache or <code>null</code> to solve without it
+  * @see IDAStarSolver#setTranspositionTable(TranspositionTable)
+  */
+ public void setTranspositionTable(TranspositionTable table)
+ {
+  this.table = table;
+ }
+
+ /**
+  * Maximum depth of the tree splitting, limited by the number of moves
+  * that fit into a <code>long</code> prefix.
+  */
+ public static final int MAX_SPLIT_DEPTH = 31;
+
+ /**
+  * Work units found within the cost bound at a specific depth.
+  * Each unit is encoded as a prefix of 2-bit move ordinal numbers,
+  * with the first move in the lowest bits.
+  */
+ private static class Split
+ {
+  void collect(DepthFirstSearch search)
+  {
+   final int estimate = search.getEstimate();
+   final int current = search.getDepth();
+   final int cost = current + estimate;
+   if (cost > bound)
+   {
+    if (cost < next)
+     next = cost;
+    return;
+   }
+   if (0 == estimate)
+   {
+    solution = search.getPath();
+    return;
+   }
+   if (current == depth)
+   {
+    if (prefixes.length == count)
+    {
+     long[] longer = new long[2 * count];
+     System.arraycopy(prefixes, 0, longer, 0, count);
+     prefixes = longer;
+    }
+    prefixes[count++] = prefix;
+    return;
+   }
+   nodeCount++;
+   final int last = search.getLastMove();
+   for (int move = 0; 4 > move && null == solution; move++)
+   {
+    if (0 <= last && (last ^ 2) == move || !search.isPermitted(move))
+     continue;
+    search.push(move);
+    prefix |= (long)move << 2 * current;
+    collect(search);
+    prefix &= ~(3L << 2 * current);
+    if (null == solution)
+     search.pop();
+   }
+  }
+
+  Split(int depth, int bound)
+  {
+   this.depth = depth;
+   this.bound = bound;
+  }
+
+  final int depth, bound;
+  int count, next = DepthFirstSearch.EXHAUSTED;
+  long[] prefixes = new long[64];
+  long prefix, nodeCount;
+  Move[] solution;
+ }
+
+ /**
+  * Searches the subtree below a prefix of moves.
+  */
+ private class Unit implements Callable<Integer>
+ {
+  public Integer call()
+  {
+   if (stop.get())
+    return DepthFirstSearch.STOPPED;
+   DepthFirstSearch search = new DepthFirstSearch(heuristic, start);
+   search.setStopFlag(stop);
+   search.setTranspositionTable(table);
+   for (int i = 0; depth > i; i++)
+    search.push((int)(prefix >>> 2 * i) & 3);
+   final int result = search.search(bound);
+   nodeCount = search.getNodeCount();
+   if (DepthFirstSearch.FOUND == result)
+   {
+    solution = search.getPath();
+    stop.set(true);
+   }
+   return result;
+  }
+
+  Unit(BoardState start, long prefix, int depth, int bound, AtomicBoolean stop)
+  {
+   this.start = start;
+   this.prefix = prefix;
+   this.depth = depth;
+   this.bound = bound;
+   this.stop = stop;
+  }
+
+  private final BoardState start;
+  private final long prefix;
+  private final int depth, bound;
+  private final AtomicBoolean stop;
+  private long nodeCount;
+  private Move[] solution;
+ }
+
+ private final Heuristic heuristic;
+ private final ExecutorService executor;
+ private final int parallelism;
+ private int unitsPerThread = 16;
+ private volatile TranspositionTable table;
+}
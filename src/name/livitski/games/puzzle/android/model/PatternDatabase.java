@@ -0,0 +1,476 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Stores the exact number of moves of a group of tiles, called a
+ * pattern, needed to bring these tiles to their target places from
+ * any arrangement, ignoring all other tiles. Moves of other tiles are
+ * not counted, so the values from databases of disjoint patterns can
+ * be added together without overestimating the number of moves left,
+ * as done by {@link PatternDatabaseHeuristic}.
+ * The database has one byte for each arrangement of the pattern tiles,
+ * indexed by the rank of their positions. Databases are built in memory
+ * and then saved to compact binary files, which are
+ * {@link #open(File) mapped} into memory on use, so they need not be
+ * loaded into the heap. A database is safe to read from multiple threads.
+ * For the explanation of this technique, please refer to:
+ * Ariel Felner, Richard E. Korf, Sarit Hanan, Additive Pattern Database
+ * Heuristics, Journal of Artificial Intelligence Research 22 (2004), 279-318.
+ */
+public class PatternDatabase
+{
+ /** Returns the size of boards this database is built for. */
+ public int getSize()
+ {
+  return size;
+ }
+
+ /** Returns the numbers of tiles in this database's pattern. */
+ public int[] getPattern()
+ {
+  return pattern.clone();
+ }
+
+ /** Returns the number of entries in this database. */
+ public int getEntryCount()
+ {
+  return entryCount;
+ }
+
+ /**
+  * Returns the index of the entry for an arrangement of tiles.
+  * @param places tile positions indexed by tile number
+  */
+ public int index(int[] places)
+ {
+  return index(places, 0, places[0]);
+ }
+
+ /**
+  * Returns the index of the entry for an arrangement of tiles
+  * with one of the pattern tiles replaced. Entries are indexed by the
+  * {@link Permutations#rank(int[], int, int) rank} of the sequence of
+  * places of the pattern tiles.
+  * @param places tile positions indexed by tile number
+  * @param tile number of the tile to be placed elsewhere
+  * @param place the replacement position of that tile
+  */
+ public int index(int[] places, int tile, int place)
+ {
+  int index = 0;
+  long used = 0L;
+  for (int i = 0; pattern.length > i; i++)
+  {
+   final int number = pattern[i];
+   final int position = number == tile ? place : places[number];
+   index = index * (tileCount - i)
+   	+ position - Long.bitCount(used & (1L << position) - 1);
+   used |= 1L << position;
+  }
+  return index;
+ }
+
+ /**
+  * Returns the number of moves of the pattern tiles needed to
+  * bring them to their target places from an arrangement.
+  * @param index the {@link #index(int[]) index} of the arrangement
+  */
+ public int get(int index)
+ {
+  return entries.get(dataOffset + index) & 0xFF;
+ }
+
+ /**
+  * Saves this database to a file, which can then be
+  * {@link #open(File) opened} by solvers.
+  */
+ public void write(File file)
+ 	throws IOException
+ {
+  OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+  try
+  {
+   DataOutputStream header = new DataOutputStream(out);
+   header.writeInt(MAGIC);
+   header.writeByte(VERSION);
+   header.writeByte(size);
+   header.writeByte(pattern.length);
+   for (int tile : pattern)
+    header.writeByte(tile);
+   header.flush();
+   byte[] buffer = new byte[1 << 16];
+   for (int i = 0; entryCount > i;)
+   {
+    final int length = Math.min(buffer.length, entryCount - i);
+    for (int j = 0; length > j; j++)
+     buffer[j] = entries.get(dataOffset + i++);
+    out.write(buffer, 0, length);
+   }
+  }
+  finally
+  {
+   out.close();
+  }
+ }
+
+ /**
+  * Maps a database file into memory. The mapping stays in place until
+  * the returned object is garbage collected, and may be shared by any
+  * number of threads.
+  * @throws IOException if the file cannot be read or is not a valid
+  * pattern database
+  */
+ public static PatternDatabase open(File file)
+ 	throws IOException
+ {
+  RandomAccessFile stream = new RandomAccessFile(file, "r");
+  try
+  {
+   FileChannel channel = stream.getChannel();
+   ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+   if (HEADER_LENGTH > buffer.limit() || MAGIC != buffer.getInt(0))
+    throw new IOException(file + " is not a pattern database");
+   if (VERSION != buffer.get(4))
+    throw new IOException("Unsupported version " + buffer.get(4)
+      + " of pattern database " + file);
+   final int size = buffer.get(5);
+   final int[] pattern = new int[buffer.get(6)];
+   if (HEADER_LENGTH + pattern.length > buffer.limit())
+    throw new IOException("Pattern database " + file + " is truncated");
+   for (int i = 0; pattern.length > i; i++)
+    pattern[i] = buffer.get(HEADER_LENGTH + i);
+   PatternDatabase database;
+   try
+   {
+    database = new PatternDatabase(size, pattern, buffer, HEADER_LENGTH + pattern.length);
+   }
+   catch (IllegalArgumentException invalid)
+   {
+    throw (IOException)new IOException("Invalid pattern database " + file)
+    	.initCause(invalid);
+   }
+   if (buffer.limit() != database.dataOffset + database.entryCount)
+    throw new IOException("Size of pattern database " + file
+      + " does not match its pattern");
+   return database;
+  }
+  finally
+  {
+   stream.close();
+  }
+ }
+
+ /**
+  * Computes a database for a pattern by breadth-first search
+  * back from the solved arrangement. States of the search are
+  * positions of the pattern tiles and the blank tile. Moves of
+  * the blank tile to cells not occupied by the pattern cost
+  * nothing, so all blank positions reachable that way are
+  * visited at once as a single region. Building databases for
+  * large patterns takes several bits of memory per state, so
+  * this method is meant for offline use.
+  * @param size the number of rows (and columns) on the board
+  * @param pattern the numbers of tiles in the pattern
+  * @throws IllegalArgumentException if the pattern is invalid or
+  * too large to build
+  */
+ public static PatternDatabase build(int size, int[] pattern)
+ {
+  PatternDatabase database = new PatternDatabase(size, pattern.clone(), null, 0);
+  return new Builder(database).run();
+ }
+
+ /**
+  * Returns the name of the file that conventionally stores
+  * the database for a pattern.
+  */
+ public static String fileName(int size, int[] pattern)
+ {
+  StringBuilder name = new StringBuilder("pdb").append(size);
+  for (int tile : pattern)
+   name.append('-').append(tile);
+  return name.append(".bin").toString();
+ }
+
+ /** Describes this database for debugging purposes. */
+ @Override
+ public String toString()
+ {
+  return "Pattern database " + Arrays.toString(pattern) + " on a board of size " + size;
+ }
+
+ /**
+  * Largest board size supported by pattern databases.
+  */
+ public static final int MAX_SIZE = 8;
+
+ protected PatternDatabase(int size, int[] pattern, ByteBuffer entries, int dataOffset)
+ {
+  if (0 >= size || MAX_SIZE < size)
+   throw new IllegalArgumentException("Unsupported board size " + size);
+  final int tileCount = size * size;
+  if (0 == pattern.length || tileCount <= pattern.length)
+   throw new IllegalArgumentException("Invalid pattern length " + pattern.length);
+  long used = 0L, count = 1L;
+  for (int i = 0; pattern.length > i; i++)
+  {
+   final int tile = pattern[i];
+   if (0 >= tile || tileCount <= tile)
+    throw new IllegalArgumentException("Invalid tile number " + tile + " in the pattern");
+   if (0L != (used & 1L << tile))
+    throw new IllegalArgumentException("Duplicate tile " + tile + " in the pattern");
+   used |= 1L << tile;
+   count *= tileCount - i;
+   if (Integer.MAX_VALUE < count)
+    throw new IllegalArgumentException("Pattern of " + pattern.length
+      + " tiles is too large for a board of size " + size);
+  }
+  this.size = size;
+  this.tileCount = tileCount;
+  this.pattern = pattern;
+  this.entryCount = (int)count;
+  this.entries = entries;
+  this.dataOffset = dataOffset;
+ }
+
+ /**
+  * Runs the breadth-first search that computes a database. Sets of
+  * visited states are kept in bit sets with one bit for every
+  * combination of pattern arrangement and blank position.
+  */
+ private static class Builder
+ {
+  PatternDatabase run()
+  {
+   final int[] places = new int[tileCount];
+   for (int i = 0; pattern.length > i; i++)
+    places[pattern[i]] = pattern[i] - 1;
+   final long start = (long)database.index(places) * tileCount + tileCount - 1;
+   set(visited, start);
+   set(frontier, start);
+   for (int level = 0; ; level++)
+   {
+    if (255 < level)
+     throw new IllegalStateException("Distance overflow in " + database);
+    if (!closeFrontier(level, places))
+     break;
+    expandFrontier(places);
+    long[] swap = frontier;
+    frontier = next;
+    next = swap;
+    Arrays.fill(next, 0L);
+   }
+   return new PatternDatabase(size, pattern, ByteBuffer.wrap(distances), 0);
+  }
+
+  /**
+   * Adds blank positions reachable without moving the pattern tiles to
+   * the frontier and records distances to the frontier's arrangements.
+   * @return whether the frontier is not empty
+   */
+  private boolean closeFrontier(int level, int[] places)
+  {
+   boolean nonEmpty = false;
+   for (int rank = nextRank(frontier, 0); 0 <= rank; rank = nextRank(frontier, rank + 1))
+   {
+    nonEmpty = true;
+    final long blanks = bits(frontier, rank);
+    unrank(rank, places);
+    final long region = flood(blanks, free(places));
+    final long added = region & ~bits(visited, rank);
+    merge(visited, rank, added);
+    merge(frontier, rank, added);
+    if (UNKNOWN == distances[rank])
+     distances[rank] = (byte)level;
+   }
+   return nonEmpty;
+  }
+
+  /**
+   * Makes all moves of pattern tiles from the frontier and
+   * stores unvisited states they reach in the next level.
+   */
+  private void expandFrontier(int[] places)
+  {
+   for (int rank = nextRank(frontier, 0); 0 <= rank; rank = nextRank(frontier, rank + 1))
+   {
+    final long blanks = bits(frontier, rank);
+    unrank(rank, places);
+    for (int i = 0; pattern.length > i; i++)
+    {
+     final int tile = pattern[i];
+     final int place = places[tile];
+     for (int move = 0; 4 > move; move++)
+     {
+      final int blank = neighbors[place << 2 | move];
+      if (0 > blank || 0L == (blanks & 1L << blank))
+       continue;
+      // the tile moves to the blank's position, and the blank takes its place
+      final long state = (long)database.index(places, tile, blank) * tileCount + place;
+      if (!get(visited, state))
+      {
+       set(visited, state);
+       set(next, state);
+      }
+     }
+    }
+   }
+  }
+
+  /** Returns the mask of cells not occupied by the pattern. */
+  private long free(int[] places)
+  {
+   long occupied = 0L;
+   for (int tile : pattern)
+    occupied |= 1L << places[tile];
+   return ~occupied & all;
+  }
+
+  /** Expands a set of blank positions to all cells reachable through a region. */
+  private long flood(long blanks, long region)
+  {
+   long reached = blanks;
+   for (;;)
+   {
+    long grown = reached
+      | (reached << 1 & ~firstColumn)
+      | (reached >>> 1 & ~lastColumn)
+      | reached << size
+      | reached >>> size;
+    grown &= region;
+    if (grown == reached)
+     return reached;
+    reached = grown;
+   }
+  }
+
+  /** Decodes positions of the pattern tiles from a rank. */
+  private void unrank(int rank, int[] places)
+  {
+   Permutations.unrank(rank, pattern.length, tileCount, positions);
+   for (int i = 0; pattern.length > i; i++)
+    places[pattern[i]] = positions[i];
+  }
+
+  private int nextRank(long[] bits, int rank)
+  {
+   long bit = (long)rank * tileCount;
+   final long limit = (long)entryCount * tileCount;
+   while (bit < limit)
+   {
+    final int word = (int)(bit >>> 6);
+    final long value = bits[word] & -1L << (bit & 63);
+    if (0L != value)
+     return (int)((((long)word << 6) + Long.numberOfTrailingZeros(value)) / tileCount);
+    bit = (long)(word + 1) << 6;
+   }
+   return -1;
+  }
+
+  private long bits(long[] bits, int rank)
+  {
+   final long bit = (long)rank * tileCount;
+   final int word = (int)(bit >>> 6);
+   final int shift = (int)(bit & 63);
+   long value = bits[word] >>> shift;
+   if (64 < shift + tileCount)
+    value |= bits[word + 1] << 64 - shift;
+   return value & all;
+  }
+
+  private void merge(long[] bits, int rank, long value)
+  {
+   final long bit = (long)rank * tileCount;
+   final int word = (int)(bit >>> 6);
+   final int shift = (int)(bit & 63);
+   bits[word] |= value << shift;
+   if (64 < shift + tileCount)
+    bits[word + 1] |= value >>> 64 - shift;
+  }
+
+  private static boolean get(long[] bits, long bit)
+  {
+   return 0L != (bits[(int)(bit >>> 6)] & 1L << bit);
+  }
+
+  private static void set(long[] bits, long bit)
+  {
+   bits[(int)(bit >>> 6)] |= 1L << bit;
+  }
+
+  Builder(PatternDatabase database)
+  {
+   this.database = database;
+   this.size = database.size;
+   this.tileCount = database.tileCount;
+   this.pattern = database.pattern;
+   this.entryCount = database.entryCount;
+   final long words = ((long)entryCount * tileCount + 63) >>> 6;
+   if (Integer.MAX_VALUE < words)
+    throw new IllegalArgumentException(database + " is too large to build");
+   this.visited = new long[(int)words];
+   this.frontier = new long[(int)words];
+   this.next = new long[(int)words];
+   this.distances = new byte[entryCount];
+   Arrays.fill(distances, UNKNOWN);
+   this.neighbors = DepthFirstSearch.neighbors(size);
+   this.positions = new int[pattern.length];
+   this.all = 64 == tileCount ? -1L : (1L << tileCount) - 1;
+   long first = 0L;
+   for (int row = 0; size > row; row++)
+    first |= 1L << row * size;
+   this.firstColumn = first;
+   this.lastColumn = first << size - 1;
+  }
+
+  private final PatternDatabase database;
+  private final int size, tileCount, entryCount;
+  private final int[] pattern, neighbors, positions;
+  private final byte[] distances;
+  private final long all, firstColumn, lastColumn;
+  private long[] visited, frontier, next;
+
+  private static final byte UNKNOWN = (byte)0xFF;
+ }
+
+ private static final int MAGIC = 0x4E504442; // "NPDB"
+ private static final byte VERSION = 1;
+ private static final int HEADER_LENGTH = 7;
+
+ private final int size, tileCount, entryCount;
+ private final int[] pattern;
+ private final ByteBuffer entries;
+ private final int dataOffset;
+}
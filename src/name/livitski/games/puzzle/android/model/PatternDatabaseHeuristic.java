@@ -0,0 +1,154 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Estimates the number of moves left as the sum of values from
+ * {@link PatternDatabase pattern databases} of disjoint patterns.
+ * Tiles not covered by any of the patterns contribute their
+ * {@link ManhattanDistance Manhattan distance}. Databases may be
+ * shared among any number of heuristics and solver threads.
+ */
+public class PatternDatabaseHeuristic implements Heuristic
+{
+ public int getSize()
+ {
+  return size;
+ }
+
+ public int evaluate(int[] cells, int[] places)
+ {
+  int value = 0;
+  for (PatternDatabase database : databases)
+   value += database.get(database.index(places));
+  for (int tile = 1; tileCount > tile; tile++)
+   if (null == owners[tile])
+    value += distance(tile, places[tile]);
+  return value;
+ }
+
+ public int adjust(int value, int[] cells, int[] places, int tile, int from, int to)
+ {
+  final PatternDatabase database = owners[tile];
+  if (null == database)
+   return value + distance(tile, to) - distance(tile, from);
+  else
+   return value + database.get(database.index(places))
+   	- database.get(database.index(places, tile, from));
+ }
+
+ @Override
+ public String toString()
+ {
+  return "Additive pattern database heuristic on a board of size " + size;
+ }
+
+ /**
+  * Returns the standard partition of tiles into disjoint patterns
+  * for boards of specific size. Patterns of the 15-puzzle have 7 and 8
+  * tiles, those of the 24-puzzle have 6 tiles each.
+  * @throws IllegalArgumentException if there is no standard partition
+  * for that size
+  */
+ public static int[][] standardPartition(int size)
+ {
+  switch (size)
+  {
+  case 3:
+   return new int[][] { { 1, 2, 3, 4 }, { 5, 6, 7, 8 } };
+  case 4:
+   return new int[][] {
+     { 1, 5, 9, 13, 2, 6, 10 },
+     { 3, 7, 11, 15, 4, 8, 12, 14 }
+   };
+  case 5:
+   return new int[][] {
+     { 1, 2, 6, 7, 11, 12 },
+     { 3, 4, 5, 8, 9, 10 },
+     { 16, 17, 18, 21, 22, 23 },
+     { 13, 14, 15, 19, 20, 24 }
+   };
+  default:
+   throw new IllegalArgumentException("No standard partition for board size " + size);
+  }
+ }
+
+ /**
+  * Creates a heuristic from the databases of the
+  * {@link #standardPartition(int) standard partition} stored in a
+  * directory under their {@link PatternDatabase#fileName(int, int[])
+  * conventional names}.
+  * @throws IOException if any of the databases cannot be opened
+  */
+ public static PatternDatabaseHeuristic open(File directory, int size)
+ 	throws IOException
+ {
+  int[][] partition = standardPartition(size);
+  PatternDatabase[] databases = new PatternDatabase[partition.length];
+  for (int i = 0; partition.length > i; i++)
+   databases[i] = PatternDatabase.open(
+     new File(directory, PatternDatabase.fileName(size, partition[i])));
+  return new PatternDatabaseHeuristic(databases);
+ }
+
+ /**
+  * Creates a heuristic from databases of disjoint patterns.
+  * @throws IllegalArgumentException if the databases are built for
+  * different board sizes or their patterns overlap
+  */
+ public PatternDatabaseHeuristic(PatternDatabase... databases)
+ {
+  if (0 == databases.length)
+   throw new IllegalArgumentException("No pattern databases");
+  this.size = databases[0].getSize();
+  this.tileCount = size * size;
+  this.databases = databases.clone();
+  this.owners = new PatternDatabase[tileCount];
+  for (PatternDatabase database : databases)
+  {
+   if (size != database.getSize())
+    throw new IllegalArgumentException(database
+      + " does not match the board size " + size);
+   for (int tile : database.getPattern())
+   {
+    if (null != owners[tile])
+     throw new IllegalArgumentException("Tile " + tile + " is in patterns of both "
+       + owners[tile] + " and " + database);
+    owners[tile] = database;
+   }
+  }
+ }
+
+ private int distance(int tile, int place)
+ {
+  final int target = tile - 1;
+  return Math.abs(place / size - target / size) + Math.abs(place % size - target % size);
+ }
+
+ private final int size, tileCount;
+ private final PatternDatabase[] databases;
+ private final PatternDatabase[] owners;
+}
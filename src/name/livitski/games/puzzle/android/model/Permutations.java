@@ -0,0 +1,296 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Numbers arrangements of tiles densely, so that they can index tables
+ * and bit sets. A sequence of <code>k</code> distinct values out of
+ * <code>n</code>, such as the places of <code>k</code> tiles on a board
+ * of <code>n</code> cells, is ranked by its Lehmer code: the digit for
+ * each value is the number of smaller values not used before it, and
+ * digits are combined in the mixed radix of the numbers of unused values.
+ * This orders sequences lexicographically, so a sequence of places of
+ * some tiles ranks the same as any longer one it starts. With used values
+ * kept in a bit mask, each digit of a rank is counted, and each value of
+ * a sequence is selected by its digit, in constant time for up to 64
+ * values, so ranking and unranking take linear time.
+ * The solvable positions of the puzzle, which make up a half of all
+ * arrangements, are numbered by the places of all tiles except the
+ * last two. The order of those two tiles is then decided by the
+ * solvability of the position, so these indices are dense too.
+ * For the explanation of this technique, please refer to:
+ * Richard E. Korf, Peter Schultze, Large-Scale Parallel Breadth-First
+ * Search, AAAI 2005, 1380-1385.
+ */
+public final class Permutations
+{
+ /**
+  * Returns the number of sequences of <code>k</code> distinct
+  * values out of <code>n</code>.
+  * @throws IllegalArgumentException if the number is too large for
+  * a <code>long</code> or the arguments are invalid
+  */
+ public static long count(int n, int k)
+ {
+  if (0 > k || k > n)
+   throw new IllegalArgumentException("Cannot choose " + k + " out of " + n + " value(s)");
+  long count = 1L;
+  for (int i = 0; k > i; i++)
+  {
+   if (Long.MAX_VALUE / (n - i) < count)
+    throw new IllegalArgumentException("Too many sequences of " + k
+      + " out of " + n + " value(s)");
+   count *= n - i;
+  }
+  return count;
+ }
+
+ /**
+  * Returns the lexicographic rank of a sequence of distinct values
+  * among all such sequences of the same length. The values are
+  * not checked.
+  * @param sequence the array with the sequence at its start
+  * @param k the length of the sequence
+  * @param n the number of values to choose from, up to 64
+  * @see #count(int, int)
+  */
+ public static long rank(int[] sequence, int k, int n)
+ {
+  return rank(sequence, 0, k, n);
+ }
+
+ /**
+  * Returns the part of the {@link #rank(int[], int, int) rank} of
+  * a sequence contributed by a range of its values. That is the number
+  * formed by the digits of its Lehmer code in that range, so that
+  * ranks of long sequences can be split into several numbers, each
+  * of which fits into a <code>long</code>.
+  * @param sequence the array with the sequence at its start
+  * @param from the position of the first value in the range
+  * @param to the position that follows the last value in the range
+  * @param n the number of values to choose from, up to 64
+  * @see #unrank(long, int, int, int, int[])
+  */
+ public static long rank(int[] sequence, int from, int to, int n)
+ {
+  long used = 0L;
+  for (int i = 0; from > i; i++)
+   used |= 1L << sequence[i];
+  long rank = 0L;
+  for (int i = from; to > i; i++)
+  {
+   final int value = sequence[i];
+   rank = rank * (n - i) + value - Long.bitCount(used & (1L << value) - 1);
+   used |= 1L << value;
+  }
+  return rank;
+ }
+
+ /**
+  * Decodes a sequence of distinct values from its
+  * {@link #rank(int[], int, int) rank}.
+  * @param rank the rank of the sequence, which is not checked
+  * @param k the length of the sequence
+  * @param n the number of values to choose from, up to 64
+  * @param sequence the array that receives the sequence at its start
+  * @return the <code>sequence</code> argument
+  */
+ public static int[] unrank(long rank, int k, int n, int[] sequence)
+ {
+  return unrank(rank, 0, k, n, sequence);
+ }
+
+ /**
+  * Decodes a range of values in a sequence from the
+  * {@link #rank(int[], int, int, int) part of its rank} they
+  * contribute. The values that precede the range must already be
+  * in place.
+  * @param rank the part of the rank, which is not checked
+  * @param from the position of the first value in the range
+  * @param to the position that follows the last value in the range
+  * @param n the number of values to choose from, up to 64
+  * @param sequence the array that receives the values
+  * @return the <code>sequence</code> argument
+  */
+ public static int[] unrank(long rank, int from, int to, int n, int[] sequence)
+ {
+  // the weight of each digit, starting with the most significant
+  long weight = 1L;
+  for (int i = from + 1; to > i; i++)
+   weight *= n - i;
+  long free = 64 == n ? -1L : (1L << n) - 1;
+  for (int i = 0; from > i; i++)
+   free &= ~(1L << sequence[i]);
+  for (int i = from; to > i; i++)
+  {
+   final int digit = (int)(rank / weight);
+   rank %= weight;
+   if (to - 1 > i)
+    weight /= n - 1 - i;
+   // find the free value with the digit's number of free values before it
+   final int value = select(free, digit);
+   sequence[i] = value;
+   free &= ~(1L << value);
+  }
+  return sequence;
+ }
+
+ /**
+  * Returns the number of solvable positions on a board of
+  * specific size.
+  * @throws IllegalArgumentException if the number is too large
+  * for a <code>long</code>
+  */
+ public static long solvableCount(int size)
+ {
+  final int tileCount = size * size;
+  return 2 < tileCount ? count(tileCount, tileCount - 2) : 1L;
+ }
+
+ /**
+  * Returns the index of a solvable position among all such positions on
+  * a board, from <code>0</code> to <code>{@link #solvableCount(int)
+  * solvableCount(size)} - 1</code>. The index of an unsolvable position
+  * is that of the solvable one with its last two tiles swapped. Supports
+  * boards of up to 4x4 cells.
+  * @param places tile positions indexed by tile number
+  * @param size the number of rows (and columns) on the board
+  */
+ public static long solvableIndex(int[] places, int size)
+ {
+  final int tileCount = size * size;
+  return 2 < tileCount ? rank(places, tileCount - 2, tileCount) : 0L;
+ }
+
+ /**
+  * Decodes a solvable position from its {@link #solvableIndex(int[], int)
+  * index}.
+  * @param index the index of the position, which is not checked
+  * @param size the number of rows (and columns) on the board
+  * @param places the array that receives tile positions indexed
+  * by tile number
+  * @return the <code>places</code> argument
+  */
+ public static int[] solvablePlaces(long index, int size, int[] places)
+ {
+  final int tileCount = size * size;
+  if (2 >= tileCount)
+  {
+   // only the solved position
+   for (int i = 0; tileCount > i; i++)
+    places[i] = (i + tileCount - 1) % tileCount;
+   return places;
+  }
+  unrank(index, tileCount - 2, tileCount, places);
+  return placeLastTiles(places, size);
+ }
+
+ /**
+  * Places the last two tiles in the two cells not taken by other tiles,
+  * in the order that makes the arrangement solvable.
+  * @param places tile positions indexed by tile number, with all
+  * but the last two set
+  * @param size the number of rows (and columns) on the board,
+  * up to 8
+  * @return the <code>places</code> argument
+  */
+ public static int[] placeLastTiles(int[] places, int size)
+ {
+  final int tileCount = size * size;
+  long free = 64 == tileCount ? -1L : (1L << tileCount) - 1;
+  for (int i = 0; tileCount - 2 > i; i++)
+   free &= ~(1L << places[i]);
+  places[tileCount - 2] = Long.numberOfTrailingZeros(free);
+  places[tileCount - 1] = 63 - Long.numberOfLeadingZeros(free);
+  if (!isSolvable(places, size))
+  {
+   places[tileCount - 2] = places[tileCount - 1];
+   places[tileCount - 1] = Long.numberOfTrailingZeros(free);
+  }
+  return places;
+ }
+
+ /**
+  * Tells whether the puzzle can be solved from an arrangement of tiles,
+  * which is the case when the parity of the permutation that takes the
+  * tiles to their target places matches that of the blank tile's
+  * distance from its target place. The parity of the permutation is
+  * that of the number of its elements less the number of its cycles.
+  * For the explanation of this criterion, please refer to:
+  * Chris Calabro, Solving the 15-Puzzle, June 14, 2005.
+  * @param places tile positions indexed by tile number, a valid
+  * arrangement on a board of up to 8x8 cells
+  * @param size the number of rows (and columns) on the board
+  */
+ public static boolean isSolvable(int[] places, int size)
+ {
+  final int tileCount = size * size;
+  long visited = 0L;
+  int parity = 0;
+  for (int start = 0; tileCount > start; start++)
+  {
+   if (0L != (visited & 1L << start))
+    continue;
+   // follow a cycle of target places, each holding the tile that
+   // belongs to the next one
+   parity ^= 1;
+   for (int place = start; 0L == (visited & 1L << place);
+     place = places[(place + 1) % tileCount])
+    visited |= 1L << place;
+  }
+  parity ^= tileCount & 1;
+  final int blank = places[0];
+  return parity == (blank / size + blank % size & 1);
+ }
+
+ /**
+  * Returns the position of a set bit in a mask that has a specific
+  * number of set bits below it. The byte that holds the bit is found
+  * by counting bits of whole bytes, and the bit by a table lookup.
+  */
+ private static int select(long bits, int index)
+ {
+  int shift = 0;
+  for (int count; (count = Long.bitCount(bits >>> shift & 0xFFL)) <= index; shift += 8)
+   index -= count;
+  return shift + SELECT_IN_BYTE[(int)(bits >>> shift & 0xFFL) << 3 | index];
+ }
+
+ private Permutations()
+ {
+ }
+
+ /**
+  * Positions of set bits in each byte value, indexed by the value
+  * times 8 plus the number of set bits below the position.
+  */
+ private static final byte[] SELECT_IN_BYTE = new byte[256 << 3];
+
+ static
+ {
+  for (int value = 0; 256 > value; value++)
+   for (int bit = 0, index = 0; 8 > bit; bit++)
+    if (0 != (value & 1 << bit))
+     SELECT_IN_BYTE[value << 3 | index++] = (byte)bit;
+ }
+}
@@ -0,0 +1,360 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.Random;
+
+/**
+ * Generates solvable positions of the puzzle, either uniformly at random
+ * or within a requested difficulty. Uniform positions are produced by the
+ * Fisher-Yates shuffle of a primitive array, which tracks the parity of
+ * the permutation as it goes, and swaps two tiles at the end if that parity
+ * makes the position unsolvable. Since that swap pairs up solvable and
+ * unsolvable positions, the result is uniform over solvable ones.
+ * Difficulty can be requested as a band of heuristic estimates or as
+ * the exact length of optimal solutions.
+ * Instances of this class are not thread-safe. To generate positions on
+ * several threads, give each thread a generator with a stream
+ * {@link SplitMixRandom#split() split} from a common seeded one, which
+ * makes the results reproducible.
+ */
+public class ScrambleGenerator
+{
+ /** Returns the number of rows (and columns) on the board. */
+ public int getSize()
+ {
+  return size;
+ }
+
+ /**
+  * Fills an array with a random solvable arrangement of tiles.
+  * @param cells the array that receives tile numbers in the
+  * {@link Board#getTileLayout() layout order}
+  * @return the <code>cells</code> argument
+  * @throws IllegalArgumentException if the array is too short
+  */
+ public int[] shuffle(int[] cells)
+ {
+  return shuffle(cells, random);
+ }
+
+ /**
+  * Fills an array with a solvable arrangement of tiles drawn from
+  * a specific source of randomness, such as a seeded or
+  * {@link SplitMixRandom#split() split} generator, rather than
+  * this generator's own.
+  * @param cells the array that receives tile numbers in the
+  * {@link Board#getTileLayout() layout order}
+  * @param random the source of randomness
+  * @return the <code>cells</code> argument
+  * @throws IllegalArgumentException if the array is too short
+  */
+ public int[] shuffle(int[] cells, Random random)
+ {
+  return shuffle(cells, size, size, random);
+ }
+
+ /**
+  * Returns a random solvable position, with all such positions
+  * equally likely.
+  * @throws IllegalStateException if the board size is too large for
+  * a {@link BoardState}
+  */
+ public BoardState next()
+ {
+  checkStateSize();
+  return BoardState.pack(size, shuffle(cells));
+ }
+
+ /**
+  * Returns a random solvable position with the heuristic estimate
+  * of its distance to the solution within a band. Uniform positions
+  * within the band are tried first. If they are unlikely to fall into
+  * the band, random walks are taken towards the band: from the solved
+  * position to bands of easy positions, or from uniform positions to
+  * bands of hard ones.
+  * @param minEstimate the lowest acceptable estimate
+  * @param maxEstimate the highest acceptable estimate
+  * @throws IllegalArgumentException if the band is empty
+  * @throws IllegalStateException if the board size is too large for
+  * a {@link BoardState}, or no position has been found in the band
+  * after a number of attempts, which happens if there are none
+  * or too few of them
+  * @see #getHeuristic()
+  */
+ public BoardState next(int minEstimate, int maxEstimate)
+ {
+  checkStateSize();
+  if (0 > minEstimate || minEstimate > maxEstimate)
+   throw new IllegalArgumentException("Invalid band of estimates "
+     + minEstimate + ".." + maxEstimate);
+  for (int attempt = 0; MAX_ATTEMPTS > attempt; attempt++)
+  {
+   shuffle(cells);
+   for (int i = 0; tileCount > i; i++)
+    places[cells[i]] = i;
+   int estimate = heuristic.evaluate(cells, places);
+   if (minEstimate <= estimate && maxEstimate >= estimate)
+    return BoardState.pack(size, cells);
+   if (UNIFORM_ATTEMPTS <= attempt)
+   {
+    if (maxEstimate < estimate)
+    {
+     for (int i = 0; tileCount > i; i++)
+      places[cells[i] = solved[i]] = i;
+     estimate = 0;
+    }
+    estimate = walk(estimate, minEstimate, maxEstimate);
+    if (minEstimate <= estimate && maxEstimate >= estimate)
+     return BoardState.pack(size, cells);
+   }
+  }
+  throw new IllegalStateException("No positions found with estimates in the band "
+    + minEstimate + ".." + maxEstimate + " of " + heuristic);
+ }
+
+ /**
+  * Returns a random solvable position with optimal solutions of
+  * a specific length. Candidates are {@link #next(int, int) drawn}
+  * with a specific estimate and solved until one of them has the
+  * requested length. The estimate is kept below that length by the
+  * average excess of optimal lengths over estimates of candidates,
+  * and drops below that value at random, since positions with rare
+  * lengths may have low estimates. Estimates that no position has are
+  * not tried again.
+  * This takes a solver call per candidate, so long targets on large
+  * boards, and lengths that few positions have, may take a while.
+  * @param length the length of optimal solutions, which must not
+  * be less than the estimate of any position that has solutions of
+  * that length
+  * @param solver the solver that finds optimal solutions for
+  * this generator's board size
+  * @throws IllegalArgumentException if the length is negative
+  * @throws IllegalStateException if the board size is too large for
+  * a {@link BoardState}, or no position with solutions of that length
+  * has been found among a number of candidates, which happens if there
+  * are none or too few of them
+  */
+ public BoardState next(int length, Solver solver)
+ {
+  if (0 > length)
+   throw new IllegalArgumentException("Invalid solution length " + length);
+  checkStateSize();
+  if (0 == length)
+   return BoardState.solved(size);
+  // the average number of moves that optimal solutions of candidates
+  // take beyond their estimates, which decides estimates of candidates
+  long gapSum = 0L;
+  int solved = 0;
+  // estimates and lengths of solutions have the same parity
+  final int lowest = 2 - (length & 1);
+  int highest = length;
+  for (int attempt = 0; MAX_CANDIDATES > attempt && lowest <= highest; attempt++)
+  {
+   final int gap = 0 == solved ? 0 : 2 * (int)((gapSum + solved) / (2 * solved));
+   int estimate = Math.min(highest, length - gap);
+   while (lowest < estimate && random.nextBoolean())
+    estimate -= 2;
+   estimate = Math.max(lowest, estimate);
+   BoardState candidate;
+   try
+   {
+    candidate = next(estimate, estimate);
+   }
+   catch (IllegalStateException empty)
+   {
+    // no positions have this estimate, nor are likely to have higher ones
+    highest = estimate - 2;
+    continue;
+   }
+   // each move shifts the blank by one cell, so the parity of solution
+   // lengths is that of the blank's distance from its target place
+   final int blank = candidate.getBlankIndex();
+   if (0 != (length + blank / size + blank % size & 1))
+    continue;
+   final int optimal = solver.solve(candidate).getLength();
+   if (optimal == length)
+    return candidate;
+   gapSum += optimal - estimate;
+   solved++;
+  }
+  throw new IllegalStateException("No positions found with solutions of length "
+    + length + " on a board of size " + size);
+ }
+
+ /** Returns the source of randomness for this generator. */
+ public Random getRandom()
+ {
+  return random;
+ }
+
+ /**
+  * Returns the heuristic that measures the difficulty of positions
+  * for {@link #next(int, int)}.
+  */
+ public Heuristic getHeuristic()
+ {
+  return heuristic;
+ }
+
+ /**
+  * Creates a generator for boards of specific size.
+  * @param size the number of rows (and columns) on the board
+  * @param random the source of randomness
+  */
+ public ScrambleGenerator(int size, Random random)
+ {
+  if (0 >= size || Integer.MAX_VALUE <= (long)size * size)
+   throw new IllegalArgumentException("Unsupported board size " + size);
+  this.size = size;
+  this.tileCount = size * size;
+  this.random = random;
+  this.cells = new int[tileCount];
+  this.places = new int[tileCount];
+  this.solved = ManhattanDistance.solvedCells(size);
+  this.heuristic = new ManhattanDistance(size, ManhattanDistance.MAX_CONFLICT_SIZE >= size);
+ }
+
+ /**
+  * Fills an array with a solvable arrangement of tiles on a board
+  * of any shape.
+  * @param cells the array that receives tile numbers in the
+  * {@link Board#getTileLayout() layout order}
+  * @param rows the number of rows on the board
+  * @param columns the number of columns on the board
+  * @param random the source of randomness
+  * @return the <code>cells</code> argument
+  * @throws IllegalArgumentException if the array is too short
+  */
+ static int[] shuffle(int[] cells, int rows, int columns, Random random)
+ {
+  final int tileCount = rows * columns;
+  if (cells.length < tileCount)
+   throw new IllegalArgumentException("Array of " + cells.length
+     + " element(s) cannot hold " + tileCount + " tiles");
+  if (1 == rows || 1 == columns)
+  {
+   // tiles in a single line cannot pass each other
+   final int blank = random.nextInt(tileCount);
+   for (int i = 0, number = 1; tileCount > i; i++)
+    cells[i] = blank == i ? 0 : number++;
+   return cells;
+  }
+  for (int i = 0; tileCount > i; i++)
+   cells[i] = i;
+  // parity of the permutation relative to the solved arrangement, which
+  // differs from the identity by a cycle of all cells
+  int parity = tileCount - 1 & 1;
+  int blank = 0;
+  for (int i = tileCount; 1 < i--;)
+  {
+   final int j = random.nextInt(i + 1);
+   if (i != j)
+   {
+    final int temp = cells[i];
+    cells[i] = cells[j];
+    cells[j] = temp;
+    parity ^= 1;
+    if (0 == cells[i])
+     blank = i;
+    else if (0 == cells[j])
+     blank = j;
+   }
+  }
+  // check if this arrangement is solvable (Calabro, 2005)
+  if (parity != (rows - 1 - blank / columns + columns - 1 - blank % columns) % 2
+    && 2 < tileCount)
+  {
+   // if not, swap two non-blank tiles
+   final int first = 0 == blank ? 1 : 0;
+   final int second = 1 >= blank ? 2 : 1;
+   final int temp = cells[first];
+   cells[first] = cells[second];
+   cells[second] = temp;
+  }
+  return cells;
+ }
+
+ /**
+  * Takes random moves from the arrangement in <code>cells</code>,
+  * accepting those that do not lead away from the band, and
+  * occasionally those that do, to get past local extremes.
+  * @return the estimate after the walk
+  */
+ private int walk(int estimate, int minEstimate, int maxEstimate)
+ {
+  final int[] neighbors = DepthFirstSearch.neighbors(size);
+  int blank = places[0];
+  for (int step = 0; MAX_WALK_LENGTH > step
+    && (minEstimate > estimate || maxEstimate < estimate); step++)
+  {
+   final int move = random.nextInt(4);
+   final int from = neighbors[blank << 2 | move];
+   if (0 > from)
+    continue;
+   final int tile = cells[from];
+   cells[blank] = tile;
+   cells[from] = 0;
+   places[tile] = blank;
+   places[0] = from;
+   final int next = heuristic.adjust(estimate, cells, places, tile, from, blank);
+   if ((minEstimate > estimate ? next >= estimate : next <= estimate)
+     || 0 == random.nextInt(DETOUR_ODDS))
+   {
+    estimate = next;
+    blank = from;
+   }
+   else
+   {
+    // take the move back
+    cells[from] = tile;
+    cells[blank] = 0;
+    places[tile] = from;
+    places[0] = blank;
+   }
+  }
+  return estimate;
+ }
+
+ private void checkStateSize()
+ {
+  if (BoardState.MAX_SIZE < size)
+   throw new IllegalStateException("Board of size " + size
+     + " cannot be represented by a compact state");
+ }
+
+ /** Uniform positions tried before walking towards a band. */
+ private static final int UNIFORM_ATTEMPTS = 16;
+ /** Attempts to find a position in a band, including random walks. */
+ private static final int MAX_ATTEMPTS = 256;
+ /** Candidates drawn in search of a position with a specific solution length. */
+ private static final int MAX_CANDIDATES = 16384;
+ private static final int MAX_WALK_LENGTH = 10000;
+ /** Odds against accepting a move that leads away from the band. */
+ private static final int DETOUR_ODDS = 8;
+
+ private final int size, tileCount;
+ private final Random random;
+ private final int[] cells, places, solved;
+ private final ManhattanDistance heuristic;
+}
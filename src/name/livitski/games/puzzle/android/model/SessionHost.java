@@ -0,0 +1,592 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hosts many independent puzzle sessions in one process without the
+ * Android parts of a {@link Game}. Sessions are spread over stripes by
+ * their identifiers, and each stripe has a thread of its own that runs
+ * all commands for its sessions, so that a session's {@link Board}
+ * is confined to one thread and needs no locks.
+ * <p>
+ * Each stripe keeps a limited number of sessions live. When there are
+ * more, the session used least recently is evicted: its
+ * {@link GameStateCodec encoded state}, which takes a few dozen bytes,
+ * replaces the board until the next command for that session restores it.
+ * <p>
+ * The host measures the time from submitting each command to its
+ * completion, which is available from its {@link #getMetrics() metrics}.
+ * Methods of this class may be called from any thread.
+ */
+public class SessionHost
+{
+ /**
+  * An operation on a session that the host runs on the thread
+  * of the session's stripe.
+  * @param <T> the type of the operation's result
+  */
+ public interface Command<T>
+ {
+  T execute(Session session);
+ }
+
+ /**
+  * A puzzle session that keeps a board, the number of moves made
+  * and their {@link MoveHistory history}. Sessions are accessible
+  * to {@link Command commands} only and are not thread-safe.
+  */
+ public static final class Session
+ {
+  public long getId()
+  {
+   return id;
+  }
+
+  public Game.Level getLevel()
+  {
+   return level;
+  }
+
+  /** Returns the number of moves made during this session. */
+  public int getMoveCount()
+  {
+   return moveCount;
+  }
+
+  /** Returns the current arrangement of tiles. */
+  public BoardState getPosition()
+  {
+   return board.getState();
+  }
+
+  /** Tells whether the puzzle is solved. */
+  public boolean isSolved()
+  {
+   return board.getTileCount() == board.getScore();
+  }
+
+  /**
+   * Makes a move of the blank tile if the rules permit it.
+   * @return whether the move has been made
+   */
+  public boolean move(Move move)
+  {
+   if (!board.isPermitted(move))
+    return false;
+   board.move(move);
+   history.add(move);
+   moveCount++;
+   return true;
+  }
+
+  /**
+   * Undoes the last move made, if any.
+   * @return whether there was a move to undo
+   */
+  public boolean undo()
+  {
+   if (!history.canUndo())
+    return false;
+   board.move(history.undo());
+   moveCount++;
+   return true;
+  }
+
+  /**
+   * Redoes the move undone last, if any.
+   * @return whether there was a move to redo
+   */
+  public boolean redo()
+  {
+   if (!history.canRedo())
+    return false;
+   board.move(history.redo());
+   moveCount++;
+   return true;
+  }
+
+  @Override
+  public String toString()
+  {
+   return "session " + id;
+  }
+
+  byte[] encode()
+  {
+   GameStateCodec codec = new GameStateCodec();
+   codec.setLevel(level);
+   codec.setPosition(board.getState());
+   codec.setMoveCount(moveCount);
+   codec.setHistory(history);
+   return codec.encode();
+  }
+
+  Session(long id, Game.Level level, BoardState position)
+  {
+   this(id, level, position, 0, new MoveHistory());
+  }
+
+  Session(long id, GameStateCodec state)
+  {
+   this(id, state.getLevel(), state.getPosition(), state.getMoveCount(), state.getHistory());
+  }
+
+  private Session(long id, Game.Level level, BoardState position,
+    int moveCount, MoveHistory history)
+  {
+   this.id = id;
+   this.level = level;
+   this.board = new Board(level.getBoardSize());
+   this.board.placeTiles(position);
+   this.moveCount = moveCount;
+   this.history = history;
+  }
+
+  private final long id;
+  private final Game.Level level;
+  private final Board board;
+  private final MoveHistory history;
+  private int moveCount;
+ }
+
+ /**
+  * Counts the commands run by a host and their latencies, the time
+  * from submitting each command to its completion. Latencies are
+  * kept in a histogram with buckets that grow with latency, each
+  * spanning an eighth of its power of two. Counters are updated
+  * without locks, so a metric read while commands complete may not
+  * agree exactly with the others.
+  */
+ public static final class Metrics
+ {
+  /** Returns the number of commands completed. */
+  public long getCommandCount()
+  {
+   return commandCount.get();
+  }
+
+  /**
+   * Returns the number of commands that failed, including those
+   * addressed to unknown sessions.
+   */
+  public long getFailureCount()
+  {
+   return failureCount.get();
+  }
+
+  /**
+   * Returns the average number of commands completed per second
+   * since the host was created.
+   */
+  public double getThroughput()
+  {
+   final double seconds = (System.nanoTime() - started) / 1e9;
+   return commandCount.get() / Math.max(seconds, 1e-9);
+  }
+
+  /** Returns the mean latency of commands in nanoseconds. */
+  public double getMeanLatency()
+  {
+   final long count = commandCount.get();
+   return 0L == count ? 0. : (double)totalLatency.get() / count;
+  }
+
+  /**
+   * Returns the latency that a fraction of commands did not exceed,
+   * rounded up to the bucket's upper bound.
+   * @param fraction the fraction of commands, e.g. <code>.99</code>
+   * for the 99th percentile
+   * @return the latency in nanoseconds, or <code>0</code> if no
+   * commands have completed
+   */
+  public long getLatency(double fraction)
+  {
+   if (0. > fraction || 1. < fraction)
+    throw new IllegalArgumentException("Invalid fraction " + fraction);
+   long total = 0L;
+   for (int i = 0; BUCKET_COUNT > i; i++)
+    total += buckets.get(i);
+   final long rank = (long)Math.ceil(fraction * total);
+   long count = 0L;
+   for (int i = 0; BUCKET_COUNT > i; i++)
+   {
+    count += buckets.get(i);
+    if (0L < count && rank <= count)
+     return upperBound(i);
+   }
+   return 0L;
+  }
+
+  @Override
+  public String toString()
+  {
+   return String.format(
+     "%d command(s), %d failed, %.0f per second, latency mean %.0f ns, median %d ns, 99%% %d ns",
+     getCommandCount(), getFailureCount(), getThroughput(), getMeanLatency(),
+     getLatency(.5), getLatency(.99));
+  }
+
+  void record(long latency, boolean failed)
+  {
+   if (0L > latency)
+    latency = 0L;
+   buckets.incrementAndGet(bucket(latency));
+   totalLatency.addAndGet(latency);
+   commandCount.incrementAndGet();
+   if (failed)
+    failureCount.incrementAndGet();
+  }
+
+  private static int bucket(long latency)
+  {
+   if (SUB_BUCKETS > latency)
+    return (int)latency;
+   final int exponent = 63 - Long.numberOfLeadingZeros(latency);
+   return (exponent - 2) << 3 | (int)(latency >>> exponent - 3) & SUB_BUCKETS - 1;
+  }
+
+  private static long upperBound(int bucket)
+  {
+   if (SUB_BUCKETS > bucket)
+    return bucket;
+   final int shift = (bucket >>> 3) - 1;
+   return ((long)(SUB_BUCKETS | bucket & SUB_BUCKETS - 1) + 1 << shift) - 1;
+  }
+
+  private static final int SUB_BUCKETS = 8;
+  private static final int BUCKET_COUNT = bucket(Long.MAX_VALUE) + 1;
+
+  private final long started = System.nanoTime();
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong commandCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final AtomicLong totalLatency = new AtomicLong();
+ }
+
+ /**
+  * Starts a session with a random arrangement of tiles.
+  * @return the identifier of the new session, which commands
+  * submitted after this call can address
+  */
+ public long open(Game.Level level)
+ {
+  return open(level, null);
+ }
+
+ /**
+  * Starts a session with an arrangement of tiles drawn from
+  * a seeded source, which reproduces the arrangement.
+  * @return the identifier of the new session, which commands
+  * submitted after this call can address
+  */
+ public long open(Game.Level level, long seed)
+ {
+  return open(level, Long.valueOf(seed));
+ }
+
+ /**
+  * Runs a command on a session.
+  * @return the command's future result, which fails with an
+  * {@link IllegalArgumentException} if there is no such session
+  */
+ public <T> Future<T> execute(final long sessionId, final Command<T> command)
+ {
+  final Stripe stripe = stripeOf(sessionId);
+  final long submitted = System.nanoTime();
+  return stripe.executor.submit(new Callable<T>() {
+   public T call()
+   {
+    boolean failed = true;
+    try
+    {
+     T result = command.execute(stripe.get(sessionId));
+     failed = false;
+     return result;
+    }
+    finally
+    {
+     metrics.record(System.nanoTime() - submitted, failed);
+    }
+   }
+  });
+ }
+
+ /**
+  * Makes a move in a session if the rules permit it.
+  * @return whether the move has been made
+  */
+ public Future<Boolean> move(long sessionId, final Move move)
+ {
+  return execute(sessionId, new Command<Boolean>() {
+   public Boolean execute(Session session)
+   {
+    return session.move(move);
+   }
+  });
+ }
+
+ /**
+  * Undoes the last move made in a session.
+  * @return whether there was a move to undo
+  */
+ public Future<Boolean> undo(long sessionId)
+ {
+  return execute(sessionId, UNDO);
+ }
+
+ /**
+  * Redoes the move undone last in a session.
+  * @return whether there was a move to redo
+  */
+ public Future<Boolean> redo(long sessionId)
+ {
+  return execute(sessionId, REDO);
+ }
+
+ /**
+  * Ends a session and discards its state.
+  * @return whether the session existed
+  */
+ public Future<Boolean> close(final long sessionId)
+ {
+  final Stripe stripe = stripeOf(sessionId);
+  return stripe.executor.submit(new Callable<Boolean>() {
+   public Boolean call()
+   {
+    return stripe.remove(sessionId);
+   }
+  });
+ }
+
+ /** Returns the number of open sessions, live or evicted. */
+ public int getSessionCount()
+ {
+  return sessionCount.get();
+ }
+
+ /** Returns the number of sessions currently evicted to their encoded state. */
+ public int getEvictedCount()
+ {
+  return evictedCount.get();
+ }
+
+ public Metrics getMetrics()
+ {
+  return metrics;
+ }
+
+ /**
+  * Stops accepting commands. Commands submitted earlier are still run.
+  */
+ public void shutdown()
+ {
+  for (Stripe stripe : stripes)
+   stripe.executor.shutdown();
+ }
+
+ /**
+  * Waits for the commands submitted before {@link #shutdown()}
+  * to complete.
+  * @return whether all commands have completed before the timeout
+  * @throws InterruptedException if the wait is interrupted
+  */
+ public boolean awaitTermination(long timeout, TimeUnit unit)
+ 	throws InterruptedException
+ {
+  final long deadline = System.nanoTime() + unit.toNanos(timeout);
+  for (Stripe stripe : stripes)
+   if (!stripe.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+    return false;
+  return true;
+ }
+
+ /**
+  * Creates a host with threads that run commands.
+  * @param threads the number of stripes, each with a thread
+  * of its own
+  * @param liveSessions the number of sessions kept live before
+  * the least recently used ones are evicted, which is divided
+  * among the stripes
+  */
+ public SessionHost(int threads, int liveSessions)
+ {
+  if (0 >= threads)
+   throw new IllegalArgumentException("Invalid number of threads: " + threads);
+  if (threads > liveSessions)
+   throw new IllegalArgumentException("Cannot keep " + liveSessions
+     + " live session(s) on " + threads + " thread(s)");
+  this.stripes = new Stripe[threads];
+  final SplitMixRandom random = new SplitMixRandom();
+  for (int i = 0; threads > i; i++)
+   stripes[i] = new Stripe(liveSessions / threads + (liveSessions % threads > i ? 1 : 0),
+     random.split());
+ }
+
+ /**
+  * The sessions of one stripe, accessed only by the stripe's thread.
+  */
+ private final class Stripe
+ {
+  void open(long id, Game.Level level, Long seed)
+  {
+   final int size = level.getBoardSize();
+   ScrambleGenerator scrambler = scramblers[level.ordinal()];
+   if (null == scrambler)
+    scramblers[level.ordinal()] = scrambler = new ScrambleGenerator(size, random);
+   final int[] cells = null == seed
+     ? scrambler.shuffle(new int[size * size])
+     : scrambler.shuffle(new int[size * size], new SplitMixRandom(seed));
+   live.put(id, new Session(id, level, BoardState.valueOf(size, cells)));
+  }
+
+  Session get(long id)
+  {
+   final Long key = id;
+   Session session = live.get(key);
+   if (null == session)
+   {
+    final byte[] state = evicted.remove(key);
+    if (null == state)
+     throw new IllegalArgumentException("No session with id " + id);
+    evictedCount.decrementAndGet();
+    session = new Session(id, new GameStateCodec().decode(state));
+    live.put(key, session);
+   }
+   return session;
+  }
+
+  boolean remove(long id)
+  {
+   final Long key = id;
+   if (null == live.remove(key))
+   {
+    if (null == evicted.remove(key))
+     return false;
+    evictedCount.decrementAndGet();
+   }
+   sessionCount.decrementAndGet();
+   return true;
+  }
+
+  Stripe(final int capacity, SplitMixRandom random)
+  {
+   this.random = random;
+   this.live = new LinkedHashMap<Long, Session>(16, .75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Session> eldest)
+    {
+     if (capacity >= size())
+      return false;
+     evicted.put(eldest.getKey(), eldest.getValue().encode());
+     evictedCount.incrementAndGet();
+     return true;
+    }
+
+    private static final long serialVersionUID = 1L;
+   };
+   this.executor = Executors.newSingleThreadExecutor(THREAD_FACTORY);
+  }
+
+  final ExecutorService executor;
+  private final SplitMixRandom random;
+  /** Live sessions by their identifiers, least recently used first. */
+  private final Map<Long, Session> live;
+  /** Encoded states of evicted sessions by their identifiers. */
+  private final Map<Long, byte[]> evicted = new HashMap<Long, byte[]>();
+  private final ScrambleGenerator[] scramblers = new ScrambleGenerator[Game.Level.values().length];
+ }
+
+ private long open(final Game.Level level, final Long seed)
+ {
+  if (null == level)
+   throw new NullPointerException("level");
+  final long id = nextId.incrementAndGet();
+  final Stripe stripe = stripeOf(id);
+  sessionCount.incrementAndGet();
+  try
+  {
+   stripe.executor.execute(new Runnable() {
+    public void run()
+    {
+     stripe.open(id, level, seed);
+    }
+   });
+  }
+  catch (RuntimeException rejected)
+  {
+   sessionCount.decrementAndGet();
+   throw rejected;
+  }
+  return id;
+ }
+
+ private Stripe stripeOf(long sessionId)
+ {
+  return stripes[(int)((sessionId & Long.MAX_VALUE) % stripes.length)];
+ }
+
+ private static final Command<Boolean> UNDO = new Command<Boolean>() {
+  public Boolean execute(Session session)
+  {
+   return session.undo();
+  }
+ };
+
+ private static final Command<Boolean> REDO = new Command<Boolean>() {
+  public Boolean execute(Session session)
+  {
+   return session.redo();
+  }
+ };
+
+ private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+  public Thread newThread(Runnable runnable)
+  {
+   Thread thread = new Thread(runnable, SessionHost.class.getSimpleName()
+     + '-' + number.incrementAndGet());
+   thread.setDaemon(true);
+   return thread;
+  }
+
+  private final AtomicInteger number = new AtomicInteger();
+ };
+
+ private final Stripe[] stripes;
+ private final Metrics metrics = new Metrics();
+ private final AtomicLong nextId = new AtomicLong();
+ private final AtomicInteger sessionCount = new AtomicInteger();
+ private final AtomicInteger evictedCount = new AtomicInteger();
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sequence of moves that solves a puzzle, along with
+ * statistics of the search that found it.
+ */
+public class Solution
+{
+ /** Returns the position this solution starts from. */
+ public BoardState getStart()
+ {
+  return start;
+ }
+
+ /**
+  * Returns the moves of the blank tile that solve the puzzle.
+  * The returned list cannot be modified.
+  */
+ public List<Move> getMoves()
+ {
+  return Collections.unmodifiableList(Arrays.asList(moves));
+ }
+
+ /** Returns the number of moves in this solution. */
+ public int getLength()
+ {
+  return moves.length;
+ }
+
+ /** Returns the number of positions expanded by the search. */
+ public long getNodeCount()
+ {
+  return nodeCount;
+ }
+
+ /**
+  * Returns the ratio that this solution's length may exceed the
+  * length of an optimal solution by. Equals <code>1</code> for
+  * solutions known to be optimal.
+  */
+ public double getSuboptimalityBound()
+ {
+  return bound;
+ }
+
+ /** Tells whether this solution is known to be optimal. */
+ public boolean isOptimal()
+ {
+  return 1. == bound;
+ }
+
+ /** Returns the wall clock time of the search in nanoseconds. */
+ public long getElapsedNanos()
+ {
+  return elapsedNanos;
+ }
+
+ /** Describes this solution for debugging purposes. */
+ @Override
+ public String toString()
+ {
+  return (isOptimal() ? "Optimal solution of " : "Solution of ")
+  	+ moves.length + " move(s) from " + start
+  	+ ", " + nodeCount + " node(s) expanded in "
+  	+ elapsedNanos / 1000000L + " ms";
+ }
+
+ Solution(BoardState start, Move[] moves, long nodeCount, long elapsedNanos)
+ {
+  this(start, moves, nodeCount, elapsedNanos, 1.);
+ }
+
+ Solution(BoardState start, Move[] moves, long nodeCount, long elapsedNanos, double bound)
+ {
+  if (1. > bound)
+   throw new IllegalArgumentException("Suboptimality bound " + bound + " is less than 1");
+  this.bound = bound;
+  this.start = start;
+  this.moves = moves;
+  this.nodeCount = nodeCount;
+  this.elapsedNanos = elapsedNanos;
+ }
+
+ private final BoardState start;
+ private final Move[] moves;
+ private final long nodeCount;
+ private final long elapsedNanos;
+ private final double bound;
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.Arrays;
+
+/**
+ * Checks that sequences of moves solve the puzzle from given layouts.
+ * Unlike {@link Board#move(Move)}, the verifier replays moves on an array
+ * of tile numbers, with no tile objects, listeners or exceptions for
+ * illegal moves, so that claimed solutions can be checked in bulk.
+ * Moves are {@link #pack(CharSequence, long[]) packed} 2 bits to a move,
+ * 32 to a <code>long</code>, lower bits first, the same way
+ * {@link MoveHistory} keeps them.
+ * <p>
+ * Instances of this class keep the layout being checked and are not
+ * thread-safe. Threads that verify solutions at the same time must use
+ * separate instances.
+ */
+public class SolutionVerifier
+{
+ /** The result of {@link #verify} when the moves solve the puzzle. */
+ public static final int SOLVED = -1;
+ /**
+  * The result of {@link #verify} when all moves are legal,
+  * but do not solve the puzzle.
+  */
+ public static final int NOT_SOLVED = -2;
+
+ /** Returns the size of boards this verifier checks. */
+ public int getSize()
+ {
+  return size;
+ }
+
+ /**
+  * Replays moves of the blank tile from a layout.
+  * @param layout tile numbers in the format of
+  * {@link Board#getTileLayout()}
+  * @param moves packed moves
+  * @param count the number of moves to replay
+  * @return {@link #SOLVED}, {@link #NOT_SOLVED} or the index of
+  * the first illegal move
+  * @throws IllegalArgumentException if the layout is not valid
+  * for a board of this verifier's size
+  */
+ public int verify(CharSequence layout, long[] moves, int count)
+ {
+  parse(layout);
+  return replay(moves, count);
+ }
+
+ /**
+  * Replays moves of the blank tile from a layout.
+  * @param layout tile numbers by position in the order of
+  * {@link Board#getTileLayout()}, which are not changed
+  * @param moves packed moves
+  * @param count the number of moves to replay
+  * @return {@link #SOLVED}, {@link #NOT_SOLVED} or the index of
+  * the first illegal move
+  * @throws IllegalArgumentException if the layout is not valid
+  * for a board of this verifier's size
+  */
+ public int verify(int[] layout, long[] moves, int count)
+ {
+  final int tileCount = cells.length;
+  if (tileCount != layout.length)
+   throw new IllegalArgumentException("Expected " + tileCount
+     + " tile number(s), got " + layout.length);
+  final int stamp = nextStamp();
+  for (int i = 0; tileCount > i; i++)
+   place(layout[i], i, stamp);
+  return replay(moves, count);
+ }
+
+ /**
+  * Packs moves denoted by the initials of their names, such as
+  * <code>ULDR</code>.
+  * @param initials the move initials in either case
+  * @param moves the array that receives the packed moves if it
+  * is large enough, or <code>null</code>
+  * @return the array with the packed moves, which is a new array
+  * if the argument was too small
+  * @throws IllegalArgumentException if a character does not
+  * denote a move
+  */
+ public static long[] pack(CharSequence initials, long[] moves)
+ {
+  final int count = initials.length();
+  final int wordCount = (count + 31) >>> 5;
+  if (null == moves || moves.length < wordCount)
+   moves = new long[wordCount];
+  long word = 0L;
+  for (int i = 0; count > i; i++)
+  {
+   final char initial = initials.charAt(i);
+   final int move;
+   switch (initial)
+   {
+   case 'U': case 'u':
+    move = 0;
+    break;
+   case 'L': case 'l':
+    move = 1;
+    break;
+   case 'D': case 'd':
+    move = 2;
+    break;
+   case 'R': case 'r':
+    move = 3;
+    break;
+   default:
+    throw new IllegalArgumentException("Character '" + initial
+      + "' at " + i + " does not denote a move");
+   }
+   word |= (long)move << (i << 1);
+   if (31 == (i & 31))
+   {
+    moves[i >>> 5] = word;
+    word = 0L;
+   }
+  }
+  if (0 != (count & 31))
+   moves[count >>> 5] = word;
+  return moves;
+ }
+
+ /**
+  * Creates a verifier for boards of a specific size.
+  * @throws IllegalArgumentException if the size is not positive
+  * or too large
+  */
+ public SolutionVerifier(int size)
+ {
+  if (0 >= size || MAX_SIZE < size)
+   throw new IllegalArgumentException("Unsupported board size: " + size);
+  final int tileCount = size * size;
+  this.size = size;
+  this.cells = new int[tileCount];
+  this.marks = new int[tileCount];
+  this.permitted = new byte[tileCount];
+  this.offsets = new int[Move.values().length];
+  for (Move move : Move.values())
+   offsets[move.ordinal()] = move.isHorizontal() ? move.getAmount() : move.getAmount() * size;
+  for (int i = 0; tileCount > i; i++)
+  {
+   final int row = i / size, column = i % size;
+   int mask = 0;
+   for (Move move : Move.values())
+   {
+    final int target = (move.isHorizontal() ? column : row) + move.getAmount();
+    if (0 <= target && size > target)
+     mask |= 1 << move.ordinal();
+   }
+   permitted[i] = (byte)mask;
+  }
+ }
+
+ /** The largest size of a board this class can verify. */
+ public static final int MAX_SIZE = 256;
+
+ private int replay(long[] moves, int count)
+ {
+  if (0 > count || moves.length << 5 < count)
+   throw new IllegalArgumentException("Cannot replay " + count
+     + " move(s) from " + moves.length + " word(s)");
+  final int[] cells = this.cells;
+  final byte[] permitted = this.permitted;
+  final int[] offsets = this.offsets;
+  int blank = this.blank;
+  for (int i = 0; count > i;)
+  {
+   long word = moves[i >>> 5];
+   // the blank's cell is left stale until the end of the sequence
+   for (final int end = Math.min(count, i + 32); end > i; i++, word >>>= 2)
+   {
+    final int move = (int)word & 3;
+    if (0 == (permitted[blank] & 1 << move))
+     return i;
+    final int target = blank + offsets[move];
+    cells[blank] = cells[target];
+    blank = target;
+   }
+  }
+  final int last = cells.length - 1;
+  if (last != blank)
+   return NOT_SOLVED;
+  for (int i = 0; last > i; i++)
+   if (i + 1 != cells[i])
+    return NOT_SOLVED;
+  return SOLVED;
+ }
+
+ private void parse(CharSequence layout)
+ {
+  final int tileCount = cells.length;
+  final int length = layout.length();
+  final int stamp = nextStamp();
+  int position = 0;
+  // the number being parsed, or -1 before its first digit
+  int number = -1;
+  // whether a space has followed the number's digits
+  boolean ended = false;
+  for (int i = 0; length >= i; i++)
+  {
+   final char c = length == i ? ',' : layout.charAt(i);
+   if ('0' <= c && '9' >= c)
+   {
+    if (ended)
+     throw new IllegalArgumentException("Space inside a tile number at " + i
+       + " of layout \"" + layout + '"');
+    number = 0 > number ? c - '0' : number * 10 + c - '0';
+    if (tileCount <= number)
+     throw new IllegalArgumentException("Invalid tile number at " + i
+       + " of layout \"" + layout + '"');
+   }
+   else if (',' == c)
+   {
+    if (0 > number)
+     throw new IllegalArgumentException("Missing tile number at " + i
+       + " of layout \"" + layout + '"');
+    if (tileCount == position)
+     throw new IllegalArgumentException("Layout \"" + layout
+       + "\" has more than " + tileCount + " tile number(s)");
+    place(number, position++, stamp);
+    number = -1;
+    ended = false;
+   }
+   else if (' ' == c)
+    ended = 0 <= number;
+   else
+    throw new IllegalArgumentException("Invalid character '" + c
+      + "' at " + i + " of layout \"" + layout + '"');
+  }
+  if (tileCount != position)
+   throw new IllegalArgumentException("Layout \"" + layout
+     + "\" has " + position + " tile number(s), expected " + tileCount);
+ }
+
+ private void place(int number, int position, int stamp)
+ {
+  if (0 > number || cells.length <= number)
+   throw new IllegalArgumentException("Invalid tile number " + number);
+  if (stamp == marks[number])
+   throw new IllegalArgumentException("Tile " + number + " has already been placed");
+  marks[number] = stamp;
+  cells[position] = number;
+  if (0 == number)
+   blank = position;
+ }
+
+ /**
+  * Returns a number that marks tiles placed in the layout being
+  * checked, so that the marks need not be cleared between layouts.
+  */
+ private int nextStamp()
+ {
+  if (0 == ++stamp)
+  {
+   Arrays.fill(marks, 0);
+   stamp = 1;
+  }
+  return stamp;
+ }
+
+ private final int size;
+ /** Tile numbers by position in the layout order. */
+ private final int[] cells;
+ /** Stamps of the layouts that placed each tile number. */
+ private final int[] marks;
+ /** Masks of moves permitted from each position, by move ordinal. */
+ private final byte[] permitted;
+ /** Offsets of the blank tile's position by move ordinal. */
+ private final int[] offsets;
+ private int blank, stamp;
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Finds sequences of moves that solve n-Puzzle games.
+ * Solvers can be shared by multiple threads unless an
+ * implementation states otherwise.
+ */
+public abstract class Solver
+{
+ /**
+  * Finds a solution for a position on the board.
+  * @param start the position to solve
+  * @throws IllegalArgumentException if the position cannot be solved
+  * or this solver does not support the board's size
+  */
+ public abstract Solution solve(BoardState start);
+
+ /**
+  * Finds a solution for the current position on a board.
+  * @throws IllegalArgumentException if the position cannot be solved
+  * or this solver does not support the board's size
+  * @see Board#getState()
+  */
+ public Solution solve(Board board)
+ {
+  return solve(board.getState());
+ }
+
+ /**
+  * Finds a solution for a position described by a
+  * {@link Board#getTileLayout() layout string}.
+  * @throws IllegalArgumentException if the string does not describe
+  * a valid position, the position cannot be solved, or this solver
+  * does not support the board's size
+  */
+ public Solution solve(String layout)
+ {
+  return solve(BoardState.valueOf(layout));
+ }
+
+ /**
+  * Makes sure that a position can be solved.
+  * @throws IllegalArgumentException if the position cannot be solved
+  */
+ protected static void checkSolvable(BoardState start)
+ {
+  if (!start.isSolvable())
+   throw new IllegalArgumentException(start + " cannot be solved");
+ }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fast source of random numbers that can be reproduced from a seed,
+ * {@link #split() split} into independent streams for worker threads
+ * and {@link #jump(long) advanced} by any number of steps at once.
+ * This is the SplitMix64 generator: Guy L. Steele, Doug Lea, Christine H.
+ * Flood, Fast Splittable Pseudorandom Number Generators, OOPSLA 2014.
+ * Each step adds an odd <em>gamma</em> to a 64-bit state and returns
+ * a mix of the state's bits, so a stream with a specific seed and gamma
+ * is the same on any platform.
+ * Unlike {@link Random}, instances of this class are not thread-safe:
+ * threads should use streams split from a common generator instead of
+ * sharing one.
+ */
+public class SplitMixRandom extends Random
+{
+ /**
+  * Returns the next 64 random bits and advances this generator
+  * by one step.
+  */
+ @Override
+ public long nextLong()
+ {
+  return mix64(state += gamma);
+ }
+
+ /**
+  * Creates a generator with a stream that does not overlap this
+  * generator's for any practical number of steps. Advances this
+  * generator by two steps.
+  */
+ public SplitMixRandom split()
+ {
+  return new SplitMixRandom(nextLong(), mixGamma(state += gamma));
+ }
+
+ /**
+  * Advances this generator by a number of steps in constant time,
+  * as if that many {@link #nextLong() 64-bit values} were drawn.
+  * @param steps the number of steps, negative numbers moving
+  * the generator back
+  * @return this generator
+  */
+ public SplitMixRandom jump(long steps)
+ {
+  state += steps * gamma;
+  return this;
+ }
+
+ /**
+  * Restarts the stream of this generator from a seed. The gamma of
+  * the stream does not change.
+  */
+ @Override
+ public void setSeed(long seed)
+ {
+  // called by the superclass constructor
+  super.setSeed(seed);
+  state = seed;
+ }
+
+ /**
+  * Creates a generator with a reproducible stream.
+  * @param seed the seed of the stream
+  */
+ public SplitMixRandom(long seed)
+ {
+  this(seed, GOLDEN_GAMMA);
+ }
+
+ /**
+  * Creates a generator with a seed that is likely to differ from
+  * that of any other generator created this way.
+  */
+ public SplitMixRandom()
+ {
+  this(mix64(UNIQUIFIER.addAndGet(GOLDEN_GAMMA)) ^ mix64(System.nanoTime()));
+ }
+
+ @Override
+ protected int next(int bits)
+ {
+  return (int)(nextLong() >>> 64 - bits);
+ }
+
+ private static long mix64(long z)
+ {
+  z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+  z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+  return z ^ z >>> 31;
+ }
+
+ /**
+  * Derives the gamma of a new stream, which has to be odd and have
+  * enough bit transitions to spread consecutive states.
+  */
+ private static long mixGamma(long z)
+ {
+  z = (z ^ z >>> 33) * 0xFF51AFD7ED558CCDL;
+  z = (z ^ z >>> 33) * 0xC4CEB9FE1A85EC53L;
+  z = (z ^ z >>> 33) | 1L;
+  return 24 > Long.bitCount(z ^ z >>> 1) ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+ }
+
+ private SplitMixRandom(long seed, long gamma)
+ {
+  super(seed);
+  this.state = seed;
+  this.gamma = gamma;
+ }
+
+ private long state;
+ private final long gamma;
+
+ private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+ private static final AtomicLong UNIQUIFIER = new AtomicLong();
+ private static final long serialVersionUID = 1L;
+}
@@ -22,9 +22,6 @@
  */
 package name.livitski.games.puzzle.android.model;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import android.graphics.drawable.Drawable;
 
 /**
@@ -79,7 +76,13 @@ public class Tile
 
  public void addOnTargetListener(TileOnTargetListener listener)
  {
-  listeners.add(listener);
+  if (listeners.length == listenerCount)
+  {
+   TileOnTargetListener[] grown = new TileOnTargetListener[listenerCount + 2];
+   System.arraycopy(listeners, 0, grown, 0, listenerCount);
+   listeners = grown;
+  }
+  listeners[listenerCount++] = listener;
  }
 
  /** Describes this tile for debugging purposes. */
@@ -116,8 +119,8 @@ public class Tile
 
  protected final void onTargetStateChanged(boolean stateNow)
  {
-  for (TileOnTargetListener listener : listeners)
-   listener.tileOnTargetStateChanged(this, stateNow);
+  for (int i = 0; listenerCount > i; i++)
+   listeners[i].tileOnTargetStateChanged(this, stateNow);
  }
 
  protected Tile(int number)
@@ -131,5 +134,8 @@ public class Tile
  private int targetRow = -1;
  private int targetColumn = -1;
  private Drawable drawable;
- private final List<TileOnTargetListener> listeners = new LinkedList<TileOnTargetListener>();
+ private TileOnTargetListener[] listeners = NO_LISTENERS;
+ private int listenerCount;
+
+ private static final TileOnTargetListener[] NO_LISTENERS = {};
 }
@@ -0,0 +1,247 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-size cache of lower bounds on the number of moves left from
+ * positions identified by their {@link ZobristHash Zobrist hashes}.
+ * Entries are stored in direct buffers outside of the Java heap, so the
+ * table does not add to the work of the garbage collector regardless of
+ * its size. The JVM must be allowed to allocate that much direct memory,
+ * for instance with the <code>-XX:MaxDirectMemorySize</code> option.
+ * <p>
+ * The table is an open-addressing array of buckets of
+ * {@value #BUCKET_SIZE} entries each, one cache line per bucket.
+ * Each entry holds the hash XOR-ed with the data word, followed by
+ * the data word. Threads probe and update entries without locks: an entry
+ * torn by concurrent writes fails the check of its hash and is treated
+ * as missing. An update may be lost to a concurrent one, which is
+ * harmless for a cache.
+ * For the explanation of this technique, please refer to:
+ * Robert M. Hyatt, Timothy Mann, A lock-less transposition table
+ * implementation for parallel search chess engines, ICGA Journal 25 (2002).
+ * </p>
+ */
+public class TranspositionTable
+{
+ /**
+  * Value returned by {@link #probe(long)} for positions
+  * not in the table.
+  */
+ public static final int NOT_FOUND = -1;
+
+ /**
+  * Number of entries in a bucket.
+  */
+ public static final int BUCKET_SIZE = 4;
+
+ /**
+  * Largest value of a bound or effort stored in the table.
+  */
+ public static final int MAX_VALUE = 0xFFFF;
+
+ /**
+  * Decides which entries are replaced by new ones when
+  * a bucket is full. An entry is chosen for replacement
+  * among those of the bucket by preferring entries stored
+  * before the last {@link TranspositionTable#nextGeneration()
+  * change of generation}, then entries that took less
+  * effort to compute.
+  */
+ public enum ReplacementPolicy
+ {
+  /** The new entry always replaces the chosen one. */
+  ALWAYS,
+  /**
+   * The new entry replaces the chosen one only if that entry
+   * is from an older generation, or took no more effort to compute.
+   * Otherwise the new entry is discarded.
+   */
+  DEPTH_PREFERRED;
+
+  boolean replaces(boolean current, int effort, int newEffort)
+  {
+   return ALWAYS == this || !current || effort <= newEffort;
+  }
+ }
+
+ /** Returns the number of entries this table can hold. */
+ public long getCapacity()
+ {
+  return (bucketMask + 1) * BUCKET_SIZE;
+ }
+
+ /** Returns the policy of replacing entries in this table. */
+ public ReplacementPolicy getReplacementPolicy()
+ {
+  return policy;
+ }
+
+ /**
+  * Looks up the bound stored for a position.
+  * @param hash the hash of the position
+  * @return the stored lower bound of the number of moves left,
+  * or {@link #NOT_FOUND}
+  */
+ public int probe(long hash)
+ {
+  final long bucket = (hash & bucketMask) * BUCKET_BYTES;
+  final ByteBuffer segment = segments[(int)(bucket >>> SEGMENT_SHIFT)];
+  final int base = (int)(bucket & SEGMENT_MASK);
+  for (int i = 0; BUCKET_SIZE > i; i++)
+  {
+   final int offset = base + i * ENTRY_BYTES;
+   final long data = segment.getLong(offset + 8);
+   if (0L != (data & OCCUPIED) && (segment.getLong(offset) ^ data) == hash)
+    return (int)(data & MAX_VALUE);
+  }
+  return NOT_FOUND;
+ }
+
+ /**
+  * Stores the bound for a position. If the table already has a bound
+  * for the same position, keeps the greater bound and effort.
+  * @param hash the hash of the position
+  * @param bound lower bound of the number of moves left, values
+  * over {@link #MAX_VALUE} are stored as that value
+  * @param effort the measure of work spent to obtain the bound,
+  * such as the depth of search, which decides what entries are
+  * {@link ReplacementPolicy replaced}
+  */
+ public void store(long hash, int bound, int effort)
+ {
+  if (0 > bound)
+   throw new IllegalArgumentException("Invalid bound " + bound);
+  bound = Math.min(bound, MAX_VALUE);
+  effort = Math.max(0, Math.min(effort, MAX_VALUE));
+  final long generation = this.generation;
+  final long bucket = (hash & bucketMask) * BUCKET_BYTES;
+  final ByteBuffer segment = segments[(int)(bucket >>> SEGMENT_SHIFT)];
+  final int base = (int)(bucket & SEGMENT_MASK);
+  int match = -1, empty = -1, victim = -1, victimEffort = 0;
+  boolean victimCurrent = true;
+  for (int i = 0; BUCKET_SIZE > i && 0 > match; i++)
+  {
+   final int offset = base + i * ENTRY_BYTES;
+   final long data = segment.getLong(offset + 8);
+   if (0L == (data & OCCUPIED))
+   {
+    if (0 > empty)
+     empty = offset;
+   }
+   else if ((segment.getLong(offset) ^ data) == hash)
+   {
+    // merge with the existing entry
+    bound = Math.max(bound, (int)(data & MAX_VALUE));
+    effort = Math.max(effort, (int)(data >>> EFFORT_SHIFT & MAX_VALUE));
+    match = offset;
+   }
+   else
+   {
+    final boolean current = generation == (data >>> GENERATION_SHIFT & MAX_VALUE);
+    final int entryEffort = (int)(data >>> EFFORT_SHIFT & MAX_VALUE);
+    if (0 > victim || victimCurrent && !current
+      || victimCurrent == current && entryEffort < victimEffort)
+    {
+     victim = offset;
+     victimCurrent = current;
+     victimEffort = entryEffort;
+    }
+   }
+  }
+  if (0 <= match)
+   victim = match;
+  else if (0 <= empty)
+   victim = empty;
+  else if (!policy.replaces(victimCurrent, victimEffort, effort))
+   return;
+  final long data = OCCUPIED | generation << GENERATION_SHIFT
+    | (long)effort << EFFORT_SHIFT | bound;
+  segment.putLong(victim, hash ^ data);
+  segment.putLong(victim + 8, data);
+ }
+
+ /**
+  * Marks entries stored so far as older than the following ones,
+  * which makes them preferred for replacement. Solvers call this
+  * method as they start on each position. A change made by one
+  * of concurrent calls may be lost, which is harmless.
+  */
+ public void nextGeneration()
+ {
+  generation = generation + 1 & MAX_VALUE;
+ }
+
+ /**
+  * Removes all entries from the table. Must not be called
+  * concurrently with other methods.
+  */
+ public void clear()
+ {
+  for (ByteBuffer segment : segments)
+   for (int offset = segment.capacity(); 0 < offset;)
+    segment.putLong(offset -= 8, 0L);
+ }
+
+ /**
+  * Allocates a table that occupies up to a specific amount of memory.
+  * @param bytes the maximum number of bytes to use, which is rounded
+  * down to a power of two bucket sizes
+  * @param policy the policy of replacing entries when buckets are full
+  * @throws IllegalArgumentException if the size is too small to hold
+  * a bucket
+  * @throws OutOfMemoryError if there is not enough direct memory
+  */
+ public TranspositionTable(long bytes, ReplacementPolicy policy)
+ {
+  if (BUCKET_BYTES > bytes)
+   throw new IllegalArgumentException("Table of " + bytes + " byte(s) cannot hold a bucket");
+  if (null == policy)
+   throw new NullPointerException("policy");
+  long buckets = Long.highestOneBit(bytes / BUCKET_BYTES);
+  this.bucketMask = buckets - 1;
+  this.policy = policy;
+  final long total = buckets * BUCKET_BYTES;
+  this.segments = new ByteBuffer[(int)((total + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+  for (int i = 0; segments.length > i; i++)
+   segments[i] = ByteBuffer.allocateDirect((int)Math.min(SEGMENT_MASK + 1L,
+     total - ((long)i << SEGMENT_SHIFT))).order(ByteOrder.nativeOrder());
+ }
+
+ private static final int ENTRY_BYTES = 16;
+ private static final int BUCKET_BYTES = BUCKET_SIZE * ENTRY_BYTES;
+ /** Buckets are stored in direct buffers of up to a gigabyte each. */
+ private static final int SEGMENT_SHIFT = 30;
+ private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+ private static final int EFFORT_SHIFT = 16;
+ private static final int GENERATION_SHIFT = 32;
+ private static final long OCCUPIED = 1L << 63;
+
+ private final ByteBuffer[] segments;
+ private final long bucketMask;
+ private final ReplacementPolicy policy;
+ private volatile long generation;
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.model;
+
+/**
+ * Zobrist hashing of puzzle positions. Each combination of a cell
+ * and a tile number, including the blank tile, is assigned a random
+ * 64-bit key, and the hash of a position is the exclusive or of the
+ * keys of all its cells. A move changes the keys of two cells only,
+ * so the hash can be updated in constant time.
+ * For the explanation of this technique, please refer to:
+ * Albert L. Zobrist, A New Hashing Method with Application for Game
+ * Playing, Technical Report 88, University of Wisconsin, 1970.
+ * Keys are derived from a fixed seed, so hashes of a position are
+ * the same in all processes.
+ */
+public final class ZobristHash
+{
+ /**
+  * Returns the hash function for boards of specific size.
+  * @param size the number of rows (and columns) on the board
+  * @throws IllegalArgumentException if the board size is not supported
+  */
+ public static ZobristHash forSize(int size)
+ {
+  if (0 >= size || BoardState.MAX_SIZE < size)
+   throw new IllegalArgumentException("Unsupported board size " + size);
+  synchronized (INSTANCES)
+  {
+   ZobristHash hash = INSTANCES[size];
+   if (null == hash)
+    INSTANCES[size] = hash = new ZobristHash(size);
+   return hash;
+  }
+ }
+
+ /** Returns the number of rows (and columns) on the board. */
+ public int getSize()
+ {
+  return size;
+ }
+
+ /**
+  * Computes the hash of a position.
+  * @throws IllegalArgumentException if the position is on
+  * a board of different size
+  */
+ public long hash(BoardState state)
+ {
+  if (state.getSize() != size)
+   throw new IllegalArgumentException("Cannot hash " + state
+     + " on a board of size " + size);
+  long hash = 0L;
+  for (int cell = 0; tileCount > cell; cell++)
+   hash ^= keys[cell * tileCount + state.get(cell)];
+  return hash;
+ }
+
+ /**
+  * Computes the hash of a position.
+  * @param cells tile numbers indexed by position
+  */
+ public long hash(int[] cells)
+ {
+  long hash = 0L;
+  for (int cell = 0; tileCount > cell; cell++)
+   hash ^= keys[cell * tileCount + cells[cell]];
+  return hash;
+ }
+
+ /**
+  * Updates the hash of a position after a tile has moved
+  * to the blank cell.
+  * @param hash the hash before the move
+  * @param tile number of the tile that has moved
+  * @param from position of that tile before the move, which
+  * is the position of the blank after the move
+  * @param to position of that tile after the move
+  * @return the hash after the move
+  */
+ public long update(long hash, int tile, int from, int to)
+ {
+  final int fromBase = from * tileCount, toBase = to * tileCount;
+  return hash ^ keys[fromBase + tile] ^ keys[toBase + tile] ^ keys[fromBase] ^ keys[toBase];
+ }
+
+ private ZobristHash(int size)
+ {
+  this.size = size;
+  this.tileCount = size * size;
+  this.keys = new long[tileCount * tileCount];
+  SplitMixRandom random = new SplitMixRandom(SEED + size);
+  for (int i = 0; keys.length > i; i++)
+   keys[i] = random.nextLong();
+ }
+
+ private final int size, tileCount;
+ /** Keys indexed by position times the tile count plus tile number. */
+ private final long[] keys;
+
+ private static final long SEED = 0x6E2D50757A7A6C65L;
+ private static final ZobristHash[] INSTANCES = new ZobristHash[BoardState.MAX_SIZE + 1];
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import name.livitski.games.puzzle.android.model.BoardState;
+import name.livitski.games.puzzle.android.model.FrontierSearchSolver;
+import name.livitski.games.puzzle.android.model.Heuristic;
+import name.livitski.games.puzzle.android.model.IDAStarSolver;
+import name.livitski.games.puzzle.android.model.ManhattanDistance;
+import name.livitski.games.puzzle.android.model.Move;
+import name.livitski.games.puzzle.android.model.PatternDatabaseHeuristic;
+import name.livitski.games.puzzle.android.model.Solution;
+import name.livitski.games.puzzle.android.model.Solver;
+import name.livitski.games.puzzle.android.model.TranspositionTable;
+
+/**
+ * Command-line tool that optimally solves positions listed in a file,
+ * one {@link BoardState#valueOf(String) tile layout} per line, on
+ * several threads. Blank lines and lines starting with <code>#</code>
+ * are ignored. Usage:
+ * <pre>
+ * java name.livitski.games.puzzle.android.tools.BatchSolver
+ *  [-threads count] [-pdb directory] [-table megabytes] [-frontier megabytes] [file]
+ * </pre>
+ * Reads standard input when no file is given. Positions are read only
+ * as fast as they are solved, so that any number of them can be processed
+ * in bounded memory. Each result is written to standard output as soon
+ * as it is available, which may be out of input order, as a tab-separated
+ * line with the input line number, solution length, moves of the blank
+ * tile denoted by their initials, nodes expanded and milliseconds spent.
+ * Invalid positions are reported to standard error. The throughput is
+ * reported to standard error at the end.
+ * With <code>-pdb</code>, solvers are guided by the pattern databases of
+ * the standard partition stored in that directory, otherwise by Manhattan
+ * distance with linear conflicts. With <code>-table</code>, solvers share
+ * a {@link TranspositionTable transposition table} of that size for each
+ * board size. With <code>-frontier</code>, positions are solved by
+ * {@link FrontierSearchSolver frontier search} that keeps that much
+ * memory per thread and stores larger layers of the search in the
+ * temporary directory.
+ */
+public class BatchSolver
+{
+ public static void main(String[] args)
+ {
+  int threads = Runtime.getRuntime().availableProcessors();
+  File databases = null;
+  long tableBytes = 0L, frontierBytes = 0L;
+  int i = 0;
+  try
+  {
+   for (; args.length > i && args[i].startsWith("-") && 1 < args[i].length(); i++)
+    if ("-threads".equals(args[i]) && args.length > i + 1)
+     threads = Integer.parseInt(args[++i]);
+    else if ("-pdb".equals(args[i]) && args.length > i + 1)
+     databases = new File(args[++i]);
+    else if ("-table".equals(args[i]) && args.length > i + 1)
+     tableBytes = Long.parseLong(args[++i]) << 20;
+    else if ("-frontier".equals(args[i]) && args.length > i + 1)
+     frontierBytes = Long.parseLong(args[++i]) << 20;
+    else
+     throw new IllegalArgumentException("Unknown option " + args[i]);
+   if (1 < args.length - i || 0 >= threads)
+    throw new IllegalArgumentException("Usage: " + BatchSolver.class.getName()
+      + " [-threads count] [-pdb directory] [-table megabytes] [-frontier megabytes] [file]");
+   InputStream input = args.length > i && !"-".equals(args[i])
+     ? new FileInputStream(args[i]) : System.in;
+   try
+   {
+    BatchSolver solver = new BatchSolver(threads, databases);
+    solver.setTableSize(tableBytes);
+    solver.setFrontierMemory(frontierBytes);
+    solver.run(
+      new BufferedReader(new InputStreamReader(input, "US-ASCII")));
+   }
+   finally
+   {
+    input.close();
+   }
+  }
+  catch (IOException failure)
+  {
+   System.err.println(failure.getMessage());
+   System.exit(2);
+  }
+  catch (IllegalArgumentException invalid)
+  {
+   System.err.println(invalid.getMessage());
+   System.exit(1);
+  }
+ }
+
+ /**
+  * Solves positions from a reader, writing the results as they
+  * become available, and waits until all of them are solved.
+  * @throws IOException if there is an error reading the input or
+  * loading pattern databases
+  */
+ public void run(BufferedReader input)
+ 	throws IOException
+ {
+  final long started = System.nanoTime();
+  final AtomicInteger solved = new AtomicInteger();
+  ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+    0L, TimeUnit.MILLISECONDS,
+    new ArrayBlockingQueue<Runnable>(threads * QUEUE_LENGTH_PER_THREAD),
+    // the reading thread solves a position itself when the queue is full
+    new ThreadPoolExecutor.CallerRunsPolicy());
+  System.out.println("line\tlength\tmoves\tnodes\tms");
+  try
+  {
+   int lineNumber = 0;
+   for (String line; null != (line = input.readLine());)
+   {
+    lineNumber++;
+    line = line.trim();
+    if (0 == line.length() || line.startsWith("#"))
+     continue;
+    final BoardState start;
+    final Solver solver;
+    try
+    {
+     start = BoardState.valueOf(line);
+     if (!start.isSolvable())
+      throw new IllegalArgumentException("Position " + line + " is not solvable");
+     solver = solverFor(start.getSize());
+    }
+    catch (IllegalArgumentException invalid)
+    {
+     System.err.println(lineNumber + ": " + invalid.getMessage());
+     continue;
+    }
+    final int number = lineNumber;
+    executor.execute(new Runnable() {
+     public void run()
+     {
+      try
+      {
+       Solution solution = solver.solve(start);
+       System.out.println(format(number, solution));
+       solved.incrementAndGet();
+      }
+      catch (RuntimeException failure)
+      {
+       System.err.println(number + ": " + failure);
+      }
+     }
+    });
+   }
+  }
+  finally
+  {
+   executor.shutdown();
+   try
+   {
+    while (!executor.awaitTermination(1L, TimeUnit.MINUTES))
+     ;
+   }
+   catch (InterruptedException interrupt)
+   {
+    executor.shutdownNow();
+    Thread.currentThread().interrupt();
+   }
+  }
+  final double seconds = (System.nanoTime() - started) / 1e9;
+  System.err.println(String.format("Solved %d position(s) in %.3f s, %.2f per second",
+    solved.get(), seconds, solved.get() / Math.max(seconds, 1e-9)));
+ }
+
+ /**
+  * Creates a batch solver.
+  * @param threads the number of threads solving positions
+  * @param databases the directory with pattern databases, or
+  * <code>null</code> to use Manhattan distance with linear
+  * conflicts
+  */
+ public BatchSolver(int threads, File databases)
+ {
+  if (0 >= threads)
+   throw new IllegalArgumentException("Invalid number of threads: " + threads);
+  this.threads = threads;
+  this.databases = databases;
+ }
+
+ /**
+  * Makes solvers share a transposition table for each board size.
+  * @param bytes the size of each table, or <code>0</code>
+  * to solve without tables
+  */
+ public void setTableSize(long bytes)
+ {
+  if (0L > bytes)
+   throw new IllegalArgumentException("Invalid table size " + bytes);
+  this.tableBytes = bytes;
+ }
+
+ /**
+  * Makes solvers use {@link FrontierSearchSolver frontier search},
+  * which keeps bounded memory for each position being solved.
+  * @param bytes the memory limit for each position, or <code>0</code>
+  * to solve with iterative-deepening A*
+  */
+ public void setFrontierMemory(long bytes)
+ {
+  if (0L > bytes)
+   throw new IllegalArgumentException("Invalid memory limit " + bytes);
+  this.frontierBytes = bytes;
+ }
+
+ private Solver solverFor(int size)
+ 	throws IOException
+ {
+  Solver solver = solvers[size];
+  if (null == solver)
+  {
+   final Heuristic heuristic = null == databases
+     ? new ManhattanDistance(size, true)
+     : PatternDatabaseHeuristic.open(databases, size);
+   if (0L < frontierBytes)
+    solvers[size] = solver = new FrontierSearchSolver(heuristic, frontierBytes, null);
+   else
+   {
+    IDAStarSolver idaStar = new IDAStarSolver(heuristic);
+    if (0L < tableBytes)
+     idaStar.setTranspositionTable(new TranspositionTable(tableBytes,
+       TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED));
+    solvers[size] = solver = idaStar;
+   }
+  }
+  return solver;
+ }
+
+ private static String format(int lineNumber, Solution solution)
+ {
+  StringBuilder line = new StringBuilder(64 + solution.getLength());
+  line.append(lineNumber).append('\t').append(solution.getLength()).append('\t');
+  for (Move move : solution.getMoves())
+   line.append(move.name().charAt(0));
+  line.append('\t').append(solution.getNodeCount())
+   .append('\t').append(solution.getElapsedNanos() / 1000000L);
+  return line.toString();
+ }
+
+ private static final int QUEUE_LENGTH_PER_THREAD = 4;
+
+ private final int threads;
+ private final File databases;
+ private long tableBytes, frontierBytes;
+ /** Solvers by board size, accessed by the reading thread only. */
+ private final Solver[] solvers = new Solver[BoardState.MAX_SIZE + 1];
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.tools;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import name.livitski.games.puzzle.android.model.SolutionVerifier;
+
+/**
+ * Command-line tool that checks claimed solutions listed in a file on
+ * several threads. Each line holds a {@link SolutionVerifier#verify(CharSequence, long[], int)
+ * tile layout} and the moves of the blank tile denoted by their initials,
+ * separated by a tab, as in <code>1,2,3,4,5,6,7,0,8&#9;R</code>. Blank
+ * lines and lines starting with <code>#</code> are ignored. Usage:
+ * <pre>
+ * java name.livitski.games.puzzle.android.tools.BatchVerifier
+ *  [-threads count] [file]
+ * </pre>
+ * Reads standard input when no file is given. Lines are handed to the
+ * threads in chunks, which are read only as fast as they are checked.
+ * Claims that are rejected are written to standard output as tab-separated
+ * lines with the input line number and the reason, which may be out of
+ * input order. Malformed lines are reported to standard error. The numbers
+ * of claims accepted and rejected, and the throughput in moves per second,
+ * are reported to standard error at the end.
+ */
+public class BatchVerifier
+{
+ public static void main(String[] args)
+ {
+  int threads = Runtime.getRuntime().availableProcessors();
+  int i = 0;
+  try
+  {
+   for (; args.length > i && args[i].startsWith("-") && 1 < args[i].length(); i++)
+    if ("-threads".equals(args[i]) && args.length > i + 1)
+     threads = Integer.parseInt(args[++i]);
+    else
+     throw new IllegalArgumentException("Unknown option " + args[i]);
+   if (1 < args.length - i || 0 >= threads)
+    throw new IllegalArgumentException("Usage: " + BatchVerifier.class.getName()
+      + " [-threads count] [file]");
+   InputStream input = args.length > i && !"-".equals(args[i])
+     ? new FileInputStream(args[i]) : System.in;
+   try
+   {
+    new BatchVerifier(threads).run(
+      new BufferedReader(new InputStreamReader(input, "US-ASCII"), 1 << 16));
+   }
+   finally
+   {
+    input.close();
+   }
+  }
+  catch (IOException failure)
+  {
+   System.err.println(failure.getMessage());
+   System.exit(2);
+  }
+  catch (IllegalArgumentException invalid)
+  {
+   System.err.println(invalid.getMessage());
+   System.exit(1);
+  }
+ }
+
+ /**
+  * Checks claims from a reader, writing the rejected ones as they
+  * are found, and waits until all of them are checked.
+  * @throws IOException if there is an error reading the input
+  */
+ public void run(BufferedReader input)
+ 	throws IOException
+ {
+  final long started = System.nanoTime();
+  ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+    0L, TimeUnit.MILLISECONDS,
+    new ArrayBlockingQueue<Runnable>(threads * QUEUE_LENGTH_PER_THREAD),
+    // the reading thread checks a chunk itself when the queue is full
+    new ThreadPoolExecutor.CallerRunsPolicy());
+  System.out.println("line\tresult");
+  try
+  {
+   int lineNumber = 0;
+   Chunk chunk = new Chunk();
+   for (String line; null != (line = input.readLine());)
+   {
+    lineNumber++;
+    if (0 == line.length() || '#' == line.charAt(0))
+     continue;
+    chunk.add(lineNumber, line);
+    if (CHUNK_LENGTH == chunk.length)
+    {
+     executor.execute(chunk);
+     chunk = new Chunk();
+    }
+   }
+   if (0 < chunk.length)
+    executor.execute(chunk);
+  }
+  finally
+  {
+   executor.shutdown();
+   try
+   {
+    while (!executor.awaitTermination(1L, TimeUnit.MINUTES))
+     ;
+   }
+   catch (InterruptedException interrupt)
+   {
+    executor.shutdownNow();
+    Thread.currentThread().interrupt();
+   }
+  }
+  final double seconds = (System.nanoTime() - started) / 1e9;
+  System.err.println(String.format(
+    "Accepted %d and rejected %d claim(s) with %d move(s) in %.3f s, %.0f moves per second",
+    accepted.get(), rejected.get(), moveCount.get(), seconds,
+    moveCount.get() / Math.max(seconds, 1e-9)));
+ }
+
+ /**
+  * Creates a batch verifier.
+  * @param threads the number of threads checking claims
+  */
+ public BatchVerifier(int threads)
+ {
+  if (0 >= threads)
+   throw new IllegalArgumentException("Invalid number of threads: " + threads);
+  this.threads = threads;
+ }
+
+ private class Chunk implements Runnable
+ {
+  public void run()
+  {
+   SolutionVerifier[] verifiers = VERIFIERS.get();
+   StringBuilder report = new StringBuilder();
+   long[] moves = null;
+   long moveCount = 0L;
+   int accepted = 0, rejected = 0;
+   for (int i = 0; length > i; i++)
+   {
+    final String line = lines[i];
+    final int separator = line.indexOf('\t');
+    final int result;
+    try
+    {
+     final String layout = 0 > separator ? line : line.substring(0, separator);
+     final String initials = 0 > separator ? "" : line.substring(separator + 1).trim();
+     final int size = sizeOf(layout);
+     SolutionVerifier verifier = verifiers[size];
+     if (null == verifier)
+      verifiers[size] = verifier = new SolutionVerifier(size);
+     moves = SolutionVerifier.pack(initials, moves);
+     result = verifier.verify(layout, moves, initials.length());
+     moveCount += 0 > result ? initials.length() : result;
+    }
+    catch (IllegalArgumentException invalid)
+    {
+     System.err.println(lineNumbers[i] + ": " + invalid.getMessage());
+     continue;
+    }
+    if (SolutionVerifier.SOLVED == result)
+     accepted++;
+    else
+    {
+     rejected++;
+     report.append(lineNumbers[i]).append('\t');
+     if (SolutionVerifier.NOT_SOLVED == result)
+      report.append("not solved");
+     else
+      report.append("illegal move ").append(result + 1);
+     report.append('\n');
+    }
+   }
+   if (0 < report.length())
+    System.out.print(report);
+   BatchVerifier.this.moveCount.addAndGet(moveCount);
+   BatchVerifier.this.accepted.addAndGet(accepted);
+   BatchVerifier.this.rejected.addAndGet(rejected);
+  }
+
+  void add(int lineNumber, String line)
+  {
+   lineNumbers[length] = lineNumber;
+   lines[length++] = line;
+  }
+
+  private final int[] lineNumbers = new int[CHUNK_LENGTH];
+  private final String[] lines = new String[CHUNK_LENGTH];
+  private int length;
+ }
+
+ /**
+  * Returns the size of a board from the number of tiles in its layout.
+  * @throws IllegalArgumentException if the layout does not describe
+  * a square board of a size supported by the verifier
+  */
+ private static int sizeOf(String layout)
+ {
+  int tileCount = 1;
+  for (int i = layout.indexOf(','); 0 <= i; i = layout.indexOf(',', i + 1))
+   tileCount++;
+  final int size = (int)Math.round(Math.sqrt(tileCount));
+  if (size * size != tileCount || SolutionVerifier.MAX_SIZE < size)
+   throw new IllegalArgumentException("Layout \"" + layout
+     + "\" does not describe a square board");
+  return size;
+ }
+
+ private static final int CHUNK_LENGTH = 4096;
+ private static final int QUEUE_LENGTH_PER_THREAD = 2;
+ /** Verifiers by board size for each thread. */
+ private static final ThreadLocal<SolutionVerifier[]> VERIFIERS
+   = new ThreadLocal<SolutionVerifier[]>() {
+  @Override
+  protected SolutionVerifier[] initialValue()
+  {
+   return new SolutionVerifier[SolutionVerifier.MAX_SIZE + 1];
+  }
+ };
+
+ private final int threads;
+ private final AtomicLong moveCount = new AtomicLong();
+ private final AtomicLong accepted = new AtomicLong();
+ private final AtomicLong rejected = new AtomicLong();
+}
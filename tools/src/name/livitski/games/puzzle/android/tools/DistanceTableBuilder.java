@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import name.livitski.games.puzzle.android.model.DistanceTable;
+
+/**
+ * Command-line tool that builds the {@link DistanceTable distance table}
+ * for 3x3 boards and saves it to a file, which is then packaged as
+ * the table's resource. Usage:
+ * <pre>
+ * java name.livitski.games.puzzle.android.tools.DistanceTableBuilder
+ *  [file]
+ * </pre>
+ * When no file is given, the table is saved to
+ * {@link DistanceTable#RESOURCE_NAME} in the current directory.
+ */
+public class DistanceTableBuilder
+{
+ public static void main(String[] args)
+ {
+  if (1 < args.length)
+  {
+   System.err.println("Usage: " + DistanceTableBuilder.class.getName() + " [file]");
+   System.exit(1);
+  }
+  try
+  {
+   final long started = System.currentTimeMillis();
+   File file = new File(0 < args.length ? args[0] : DistanceTable.RESOURCE_NAME);
+   OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+   try
+   {
+    DistanceTable.build().write(out);
+   }
+   finally
+   {
+    out.close();
+   }
+   System.err.println("Saved " + file + " in "
+     + (System.currentTimeMillis() - started) + " ms");
+  }
+  catch (IOException failure)
+  {
+   System.err.println(failure.getMessage());
+   System.exit(2);
+  }
+ }
+}
@@ -0,0 +1,541 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.tools;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import name.livitski.games.puzzle.android.model.Board;
+import name.livitski.games.puzzle.android.model.BoardState;
+import name.livitski.games.puzzle.android.model.Game;
+import name.livitski.games.puzzle.android.model.Move;
+import name.livitski.games.puzzle.android.model.MoveListener;
+import name.livitski.games.puzzle.android.model.Tile;
+import name.livitski.games.puzzle.android.model.TileOnTargetListener;
+
+/**
+ * Command-line tool that measures the throughput and allocation rate
+ * of the {@link Board board} operations on a plain JVM, for each
+ * {@link Game.Level difficulty level}. Usage:
+ * <pre>
+ * java name.livitski.games.puzzle.android.tools.ModelBenchmark
+ *  [-iterations count] [-time millis] [level|benchmark ...]
+ * java name.livitski.games.puzzle.android.tools.ModelBenchmark
+ *  -check-allocation [level ...]
+ * </pre>
+ * Each benchmark runs the same number of warmup and measurement
+ * iterations of the given duration. Results are written to standard
+ * output as tab-separated lines with the benchmark name, level,
+ * mean operations per second and its standard deviation over the
+ * measurement iterations, bytes allocated per operation and the
+ * number of garbage collections during the measurement. The allocation
+ * rate is reported only on JVMs that count allocated bytes per thread.
+ * Levels and benchmarks named on the command line restrict the runs
+ * to those levels and benchmarks.
+ * With <code>-check-allocation</code>, the tool makes a million random
+ * moves on a board of each level instead, with listeners registered
+ * the way a game does, and fails with exit status 3 if any memory
+ * is allocated by the moves.
+ */
+public class ModelBenchmark
+{
+ public static void main(String[] args)
+ {
+  int iterations = 5;
+  long millis = 1000L;
+  List<Game.Level> levels = new ArrayList<Game.Level>();
+  List<String> names = new ArrayList<String>();
+  boolean checkAllocation = false;
+  try
+  {
+   for (int i = 0; args.length > i; i++)
+    if ("-check-allocation".equals(args[i]))
+     checkAllocation = true;
+    else if ("-iterations".equals(args[i]) && args.length > i + 1)
+     iterations = Integer.parseInt(args[++i]);
+    else if ("-time".equals(args[i]) && args.length > i + 1)
+     millis = Long.parseLong(args[++i]);
+    else if (args[i].startsWith("-"))
+     throw new IllegalArgumentException("Usage: " + ModelBenchmark.class.getName()
+       + " [-iterations count] [-time millis] [level|benchmark ...]");
+    else if (isLevel(args[i]))
+     levels.add(Game.Level.valueOf(args[i].toUpperCase()));
+    else if (BENCHMARKS.contains(args[i]))
+     names.add(args[i]);
+    else
+     throw new IllegalArgumentException("Unknown level or benchmark " + args[i]
+       + ", benchmarks are " + BENCHMARKS);
+   if (0 >= iterations || 0 >= millis)
+    throw new IllegalArgumentException("Iteration count and time must be positive");
+  }
+  catch (IllegalArgumentException invalid)
+  {
+   System.err.println(invalid.getMessage());
+   System.exit(1);
+  }
+  if (levels.isEmpty())
+   for (Game.Level level : Game.Level.values())
+    levels.add(level);
+  if (checkAllocation)
+  {
+   if (null == ALLOCATED_BYTES)
+   {
+    System.err.println("This JVM does not count allocated bytes");
+    System.exit(2);
+   }
+   boolean allocationFree = true;
+   for (Game.Level level : levels)
+   {
+    final long allocated = moveAllocation(level, ALLOCATION_CHECK_MOVES);
+    System.out.println(level + "\t" + ALLOCATION_CHECK_MOVES + " moves\t" + allocated + " bytes");
+    allocationFree &= 0L == allocated;
+   }
+   if (!allocationFree)
+    System.exit(3);
+   return;
+  }
+  if (names.isEmpty())
+   names.addAll(BENCHMARKS);
+  ModelBenchmark benchmark = new ModelBenchmark(iterations, millis * 1000000L);
+  System.out.println("benchmark\tlevel\tops/s\terror\tB/op\tgc count");
+  for (String name : names)
+   for (Game.Level level : levels)
+    benchmark.run(name, level);
+ }
+
+ /**
+  * Runs a benchmark on a board of specific difficulty level
+  * and prints the results.
+  * @throws IllegalArgumentException if there is no such benchmark
+  */
+ public void run(String name, Game.Level level)
+ {
+  Operation operation = operation(name, new BenchmarkBoard(level.getBoardSize()));
+  for (int i = 0; iterations > i; i++)
+   measure(operation);
+  double[] rates = new double[iterations];
+  double sum = 0.;
+  long operations = 0L, allocated = 0L;
+  final long collections = collectionCount();
+  for (int i = 0; iterations > i; i++)
+  {
+   final long allocatedBefore = allocatedBytes();
+   Measurement result = measure(operation);
+   allocated += allocatedBytes() - allocatedBefore;
+   operations += result.operations;
+   sum += rates[i] = result.operations * 1e9 / result.nanos;
+  }
+  final double mean = sum / iterations;
+  double variance = 0.;
+  for (double rate : rates)
+   variance += (rate - mean) * (rate - mean);
+  variance /= Math.max(1, iterations - 1);
+  System.out.println(name + '\t' + level
+    + '\t' + String.format("%.1f\t%.1f", mean, Math.sqrt(variance))
+    + '\t' + (null == ALLOCATED_BYTES ? "n/a" : String.format("%.2f", (double)allocated / operations))
+    + '\t' + (collectionCount() - collections));
+ }
+
+ /**
+  * Makes random moves on a board of specific difficulty level after
+  * a warmup and returns the number of bytes allocated by the moves.
+  * Does not count memory allocated by other threads.
+  */
+ public static long moveAllocation(Game.Level level, int moveCount)
+ {
+  BenchmarkBoard board = new BenchmarkBoard(level.getBoardSize());
+  Move[] moves = board.randomWalk(moveCount, new Random(level.ordinal()));
+  // warm up on the way there and measure on the way back
+  for (Move move : moves)
+   board.move(move);
+  // reading the counter through reflection allocates a little
+  final long overhead = -allocatedBytes() + allocatedBytes();
+  final long before = allocatedBytes();
+  for (int i = moves.length; 0 < i--;)
+   board.move(moves[i].opposite());
+  final long allocated = allocatedBytes() - before - overhead;
+  sink ^= board.events;
+  return allocated;
+ }
+
+ /**
+  * Creates a benchmark harness.
+  * @param iterations the number of warmup and measurement iterations
+  * @param iterationNanos the duration of each iteration
+  */
+ public ModelBenchmark(int iterations, long iterationNanos)
+ {
+  this.iterations = iterations;
+  this.iterationNanos = iterationNanos;
+ }
+
+ /**
+  * Benchmark names in the order they are run by default.
+  */
+ public static final List<String> BENCHMARKS = Collections.unmodifiableList(
+   Arrays.asList("move", "permittedMoveFor", "getScore", "getMinimumMovesLeft",
+     "placeTilesRandom", "computePermutationSign", "getTileLayout", "placeTiles",
+     "tilePlace"));
+
+ /**
+  * An operation being measured, run in batches.
+  */
+ private static abstract class Operation
+ {
+  /**
+   * Runs the operation a number of times and returns a value
+   * that depends on the results, so that the work is not
+   * optimized away.
+   */
+  abstract long run(int times);
+ }
+
+ private static class Measurement
+ {
+  long operations, nanos;
+ }
+
+ /**
+  * Exposes protected board operations to benchmarks.
+  */
+ private static class BenchmarkBoard extends Board implements MoveListener, TileOnTargetListener
+ {
+  public void tileMoved(Tile from, Tile to)
+  {
+   events++;
+  }
+
+  public void tileOnTargetStateChanged(Tile tile, boolean onTarget)
+  {
+   events++;
+  }
+
+  void shuffle()
+  {
+   placeTilesRandom();
+  }
+
+  int permutationSign()
+  {
+   return computePermutationSign();
+  }
+
+  void place(String layout)
+  {
+   placeTiles(layout);
+  }
+
+  /**
+   * Returns a random walk of the blank tile from the current
+   * position that never undoes the previous move.
+   */
+  Move[] randomWalk(int length, Random random)
+  {
+   Move[] moves = new Move[length];
+   BoardState position = getState();
+   Move last = null;
+   for (int i = 0; length > i; i++)
+   {
+    Move move;
+    do move = Move.valueOf(random.nextInt(4));
+    while (!position.isPermitted(move) || null != last && move == last.opposite());
+    position = position.move(move);
+    moves[i] = last = move;
+   }
+   return moves;
+  }
+
+  /**
+   * Returns a walk of the blank tile that starts and ends
+   * at the current position.
+   */
+  Move[] roundTrip(int length, Random random)
+  {
+   Move[] moves = new Move[2 * length];
+   System.arraycopy(randomWalk(length, random), 0, moves, 0, length);
+   for (int i = 0; length > i; i++)
+    moves[2 * length - 1 - i] = moves[i].opposite();
+   return moves;
+  }
+
+  BenchmarkBoard(int size)
+  {
+   super(size);
+   placeTilesRandom();
+   addMoveListener(this);
+   addTileOnTargetListener(this);
+  }
+
+  long events;
+ }
+
+ /**
+  * Exposes tile placement to the listener dispatch benchmark.
+  */
+ private static class BenchmarkTile extends Tile implements TileOnTargetListener
+ {
+  public void tileOnTargetStateChanged(Tile tile, boolean onTarget)
+  {
+   events++;
+  }
+
+  void moveTo(int row, int column)
+  {
+   place(row, column);
+  }
+
+  BenchmarkTile()
+  {
+   super(1);
+   target(0, 0);
+   addOnTargetListener(this);
+  }
+
+  long events;
+ }
+
+ private Operation operation(String name, final BenchmarkBoard board)
+ {
+  final Random random = new Random(BENCHMARKS.indexOf(name));
+  final int tileCount = board.getTileCount();
+  if ("move".equals(name))
+  {
+   final Move[] walk = board.roundTrip(1024, random);
+   return new Operation() {
+    long run(int times)
+    {
+     for (int i = 0; times > i; i++)
+     {
+      board.move(walk[next]);
+      if (walk.length == ++next)
+       next = 0;
+     }
+     return board.events;
+    }
+    private int next;
+   };
+  }
+  else if ("permittedMoveFor".equals(name))
+  {
+   final Tile[] tiles = new Tile[tileCount];
+   for (int i = 0; tileCount > i; i++)
+    tiles[i] = board.getTileAt(i / board.getSize(), i % board.getSize());
+   return new Operation() {
+    long run(int times)
+    {
+     long result = 0L;
+     for (int i = 0; times > i; i++)
+     {
+      if (null != board.permittedMoveFor(tiles[next]))
+       result++;
+      if (tileCount == ++next)
+       next = 0;
+     }
+     return result;
+    }
+    private int next;
+   };
+  }
+  else if ("getScore".equals(name))
+   return new Operation() {
+    long run(int times)
+    {
+     long result = 0L;
+     for (int i = 0; times > i; i++)
+      result += board.getScore();
+     return result;
+    }
+   };
+  else if ("getMinimumMovesLeft".equals(name))
+  {
+   final Move[] walk = board.roundTrip(1024, random);
+   return new Operation() {
+    long run(int times)
+    {
+     long result = 0L;
+     for (int i = 0; times > i; i++)
+     {
+      board.move(walk[next]);
+      if (walk.length == ++next)
+       next = 0;
+      result += board.getMinimumMovesLeft();
+     }
+     return result;
+    }
+    private int next;
+   };
+  }
+  else if ("placeTilesRandom".equals(name))
+   return new Operation() {
+    long run(int times)
+    {
+     for (int i = 0; times > i; i++)
+      board.shuffle();
+     return board.events;
+    }
+   };
+  else if ("computePermutationSign".equals(name))
+   return new Operation() {
+    long run(int times)
+    {
+     long result = 0L;
+     for (int i = 0; times > i; i++)
+      result += board.permutationSign();
+     return result;
+    }
+   };
+  else if ("getTileLayout".equals(name))
+   return new Operation() {
+    long run(int times)
+    {
+     long result = 0L;
+     for (int i = 0; times > i; i++)
+      result += board.getTileLayout().length();
+     return result;
+    }
+   };
+  else if ("placeTiles".equals(name))
+  {
+   final String[] layouts = new String[16];
+   for (int i = 0; layouts.length > i; i++)
+   {
+    board.shuffle();
+    layouts[i] = board.getTileLayout();
+   }
+   return new Operation() {
+    long run(int times)
+    {
+     for (int i = 0; times > i; i++)
+     {
+      board.place(layouts[next]);
+      if (layouts.length == ++next)
+       next = 0;
+     }
+     return board.events;
+    }
+    private int next;
+   };
+  }
+  else if ("tilePlace".equals(name))
+  {
+   final BenchmarkTile tile = new BenchmarkTile();
+   return new Operation() {
+    long run(int times)
+    {
+     for (int i = 0; times > i; i++)
+      tile.moveTo(0, i & 1);
+     return tile.events;
+    }
+   };
+  }
+  else
+   throw new IllegalArgumentException("Unknown benchmark " + name);
+ }
+
+ private Measurement measure(Operation operation)
+ {
+  Measurement result = new Measurement();
+  int batch = 1;
+  final long started = System.nanoTime();
+  long elapsed;
+  do
+  {
+   sink ^= operation.run(batch);
+   result.operations += batch;
+   elapsed = System.nanoTime() - started;
+   if (elapsed < iterationNanos / 100 && MAX_BATCH > batch)
+    batch <<= 1;
+  } while (elapsed < iterationNanos);
+  result.nanos = elapsed;
+  return result;
+ }
+
+ private static boolean isLevel(String name)
+ {
+  for (Game.Level level : Game.Level.values())
+   if (level.name().equalsIgnoreCase(name))
+    return true;
+  return false;
+ }
+
+ private static long collectionCount()
+ {
+  long count = 0L;
+  for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+   count += Math.max(0L, collector.getCollectionCount());
+  return count;
+ }
+
+ /**
+  * Returns the number of bytes allocated by the current thread,
+  * or <code>0</code> if the JVM does not count them.
+  */
+ private static long allocatedBytes()
+ {
+  if (null == ALLOCATED_BYTES)
+   return 0L;
+  try
+  {
+   return (Long)ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+  }
+  catch (Exception unsupported)
+  {
+   return 0L;
+  }
+ }
+
+ private static final int MAX_BATCH = 1 << 20;
+ private static final int ALLOCATION_CHECK_MOVES = 1000000;
+ private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+ /** Vendor-specific method that counts bytes allocated by a thread. */
+ private static final Method ALLOCATED_BYTES;
+
+ static
+ {
+  Method method = null;
+  try
+  {
+   method = Class.forName("com.sun.management.ThreadMXBean")
+     .getMethod("getThreadAllocatedBytes", long.class);
+   method.invoke(THREADS, Thread.currentThread().getId());
+  }
+  catch (Exception unsupported)
+  {
+   method = null;
+  }
+  ALLOCATED_BYTES = method;
+ }
+
+ /** Accumulates results of benchmarked operations. */
+ static volatile long sink;
+
+ private final int iterations;
+ private final long iterationNanos;
+}
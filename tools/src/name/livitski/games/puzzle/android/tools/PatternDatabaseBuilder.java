@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.StringTokenizer;
+
+import name.livitski.games.puzzle.android.model.PatternDatabase;
+import name.livitski.games.puzzle.android.model.PatternDatabaseHeuristic;
+
+/**
+ * Command-line tool that builds {@link PatternDatabase pattern databases}
+ * and stores them in a directory under their conventional names.
+ * Usage:
+ * <pre>
+ * java name.livitski.games.puzzle.android.tools.PatternDatabaseBuilder
+ *  size directory [tile,tile,... ...]
+ * </pre>
+ * When no patterns are listed, builds the
+ * {@link PatternDatabaseHeuristic#standardPartition(int) standard partition}
+ * for the board size. Large patterns need several gigabytes of heap.
+ */
+public class PatternDatabaseBuilder
+{
+ public static void main(String[] args)
+ {
+  if (2 > args.length)
+  {
+   System.err.println("Usage: " + PatternDatabaseBuilder.class.getName()
+     + " size directory [tile,tile,... ...]");
+   System.exit(1);
+  }
+  try
+  {
+   final int size = Integer.parseInt(args[0]);
+   final File directory = new File(args[1]);
+   int[][] patterns;
+   if (2 == args.length)
+    patterns = PatternDatabaseHeuristic.standardPartition(size);
+   else
+   {
+    patterns = new int[args.length - 2][];
+    for (int i = 0; patterns.length > i; i++)
+     patterns[i] = parsePattern(args[i + 2]);
+   }
+   if (!directory.isDirectory() && !directory.mkdirs())
+    throw new IOException("Could not create directory " + directory);
+   for (int[] pattern : patterns)
+   {
+    final long started = System.currentTimeMillis();
+    File file = new File(directory, PatternDatabase.fileName(size, pattern));
+    PatternDatabase.build(size, pattern).write(file);
+    System.err.println("Saved " + file + " in "
+      + (System.currentTimeMillis() - started) + " ms");
+   }
+  }
+  catch (IOException failure)
+  {
+   System.err.println(failure.getMessage());
+   System.exit(2);
+  }
+  catch (IllegalArgumentException invalid)
+  {
+   System.err.println(invalid.getMessage());
+   System.exit(1);
+  }
+ }
+
+ private static int[] parsePattern(String list)
+ {
+  StringTokenizer numbers = new StringTokenizer(list, ",");
+  int[] pattern = new int[numbers.countTokens()];
+  for (int i = 0; numbers.hasMoreTokens(); i++)
+   pattern[i] = Integer.parseInt(numbers.nextToken().trim());
+  return pattern;
+ }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import name.livitski.games.puzzle.android.model.Game;
+import name.livitski.games.puzzle.android.model.IDAStarSolver;
+import name.livitski.games.puzzle.android.model.ManhattanDistance;
+import name.livitski.games.puzzle.android.model.PatternDatabaseHeuristic;
+import name.livitski.games.puzzle.android.model.ScrambleGenerator;
+import name.livitski.games.puzzle.android.model.Solver;
+import name.livitski.games.puzzle.android.model.SplitMixRandom;
+
+/**
+ * Command-line tool that generates a set of puzzles for a
+ * {@link Game.Level game level}. Usage:
+ * <pre>
+ * java name.livitski.games.puzzle.android.tools.PuzzleSetGenerator
+ *  [-seed number] [-band min max | -length moves [-pdb directory]]
+ *  level count
+ * </pre>
+ * Writes {@link name.livitski.games.puzzle.android.model.BoardState#getTileLayout()
+ * tile layouts} to standard output, one per line, in the format read by
+ * {@link BatchSolver}. Without options, positions are uniformly random.
+ * With <code>-band</code>, their Manhattan distance, with linear conflicts
+ * on boards of up to {@link ManhattanDistance#MAX_CONFLICT_SIZE} cells
+ * across, falls within that band. With <code>-length</code>, their
+ * optimal solutions are that long, as verified by a solver guided by
+ * pattern databases from the <code>-pdb</code> directory, or by
+ * Manhattan distance with linear conflicts. The same seed produces
+ * the same set.
+ */
+public class PuzzleSetGenerator
+{
+ public static void main(String[] args)
+ {
+  Long seed = null;
+  int minEstimate = -1, maxEstimate = -1, length = -1;
+  File databases = null;
+  int i = 0;
+  try
+  {
+   for (; args.length > i && args[i].startsWith("-"); i++)
+    if ("-seed".equals(args[i]) && args.length > i + 1)
+     seed = Long.valueOf(args[++i]);
+    else if ("-band".equals(args[i]) && args.length > i + 2)
+    {
+     minEstimate = Integer.parseInt(args[++i]);
+     maxEstimate = Integer.parseInt(args[++i]);
+    }
+    else if ("-length".equals(args[i]) && args.length > i + 1)
+     length = Integer.parseInt(args[++i]);
+    else if ("-pdb".equals(args[i]) && args.length > i + 1)
+     databases = new File(args[++i]);
+    else
+     throw new IllegalArgumentException("Unknown option " + args[i]);
+   if (2 != args.length - i || 0 <= length && 0 <= minEstimate)
+    throw new IllegalArgumentException("Usage: " + PuzzleSetGenerator.class.getName()
+      + " [-seed number] [-band min max | -length moves [-pdb directory]] level count");
+   final Game.Level level = Game.Level.valueOf(args[i].toUpperCase());
+   final int count = Integer.parseInt(args[i + 1]);
+   final int size = level.getBoardSize();
+   ScrambleGenerator generator = new ScrambleGenerator(size,
+     null == seed ? new SplitMixRandom() : new SplitMixRandom(seed));
+   Solver solver = null;
+   if (0 <= length)
+    solver = null == databases ? new IDAStarSolver(size)
+      : new IDAStarSolver(PatternDatabaseHeuristic.open(databases, size));
+   final long started = System.nanoTime();
+   PrintStream out = System.out;
+   for (int n = 0; count > n; n++)
+    out.println((null != solver ? generator.next(length, solver)
+      : 0 <= minEstimate ? generator.next(minEstimate, maxEstimate)
+      : generator.next()).getTileLayout());
+   out.flush();
+   final double seconds = (System.nanoTime() - started) / 1e9;
+   System.err.println(String.format("Generated %d puzzle(s) in %.3f s, %.2f per second",
+     count, seconds, count / Math.max(seconds, 1e-9)));
+  }
+  catch (IOException failure)
+  {
+   System.err.println(failure.getMessage());
+   System.exit(2);
+  }
+  catch (IllegalArgumentException invalid)
+  {
+   System.err.println(invalid.getMessage());
+   System.exit(1);
+  }
+  catch (IllegalStateException unreachable)
+  {
+   // no positions in the band requested
+   System.err.println(unreachable.getMessage());
+   System.exit(1);
+  }
+ }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright © 2011,2013 Konstantin Livitski
+ * 
+ * This file is part of n-Puzzle application. n-Puzzle application is free
+ * software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * n-Puzzle application contains adaptations of artwork covered by the Creative
+ * Commons Attribution-ShareAlike 3.0 Unported license. Please refer to the
+ * NOTICE.md file at the root of this distribution or repository for licensing
+ * terms that apply to that artwork.
+ * 
+ * n-Puzzle application is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * n-Puzzle application; if not, see the LICENSE/gpl.txt file of this distribution
+ * or visit <http://www.gnu.org/licenses>.
+ */
+package name.livitski.games.puzzle.android.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import name.livitski.games.puzzle.android.model.BidirectionalSolver;
+import name.livitski.games.puzzle.android.model.BoardState;
+import name.livitski.games.puzzle.android.model.Heuristic;
+import name.livitski.games.puzzle.android.model.IDAStarSolver;
+import name.livitski.games.puzzle.android.model.ManhattanDistance;
+import name.livitski.games.puzzle.android.model.ParallelIDAStarSolver;
+import name.livitski.games.puzzle.android.model.PatternDatabaseHeuristic;
+import name.livitski.games.puzzle.android.model.ScrambleGenerator;
+import name.livitski.games.puzzle.android.model.Solution;
+import name.livitski.games.puzzle.android.model.Solver;
+import name.livitski.games.puzzle.android.model.SplitMixRandom;
+
+/**
+ * Command-line tool that solves a reproducible set of random positions
+ * with the sequential and parallel solvers and reports the speedup.
+ * Usage:
+ * <pre>
+ * java name.livitski.games.puzzle.android.tools.SolverComparison
+ *  [-threads count] [-pdb directory] [-bidirectional megabytes] size count [seed]
+ * </pre>
+ * With <code>-pdb</code>, both solvers are guided by the pattern
+ * databases of the standard partition stored in that directory,
+ * otherwise by Manhattan distance with linear conflicts.
+ * With <code>-bidirectional</code>, the sequential solver is compared
+ * with the {@link BidirectionalSolver bidirectional} one, which may
+ * use that much memory before falling back to iterative-deepening A*.
+ */
+public class SolverComparison
+{
+ public static void main(String[] args)
+ {
+  int threads = Runtime.getRuntime().availableProcessors();
+  File databases = null;
+  long memory = -1L;
+  int i = 0;
+  try
+  {
+   for (; args.length > i && args[i].startsWith("-"); i++)
+    if ("-threads".equals(args[i]) && args.length > i + 1)
+     threads = Integer.parseInt(args[++i]);
+    else if ("-pdb".equals(args[i]) && args.length > i + 1)
+     databases = new File(args[++i]);
+    else if ("-bidirectional".equals(args[i]) && args.length > i + 1)
+     memory = Long.parseLong(args[++i]) << 20;
+    else
+     throw new IllegalArgumentException("Unknown option " + args[i]);
+   if (2 > args.length - i)
+    throw new IllegalArgumentException("Usage: " + SolverComparison.class.getName()
+      + " [-threads count] [-pdb directory] [-bidirectional megabytes] size count [seed]");
+   final int size = Integer.parseInt(args[i++]);
+   final int count = Integer.parseInt(args[i++]);
+   final long seed = args.length > i ? Long.parseLong(args[i]) : 0L;
+   final Heuristic heuristic = null == databases
+     ? new ManhattanDistance(size, true)
+     : PatternDatabaseHeuristic.open(databases, size);
+   if (0L <= memory)
+   {
+    BidirectionalSolver contender = new BidirectionalSolver(heuristic, memory);
+    compare(new IDAStarSolver(heuristic), contender, size, count, seed);
+    System.out.println("fallbacks\t" + contender.getFallbackCount());
+    return;
+   }
+   ExecutorService executor = Executors.newFixedThreadPool(threads);
+   try
+   {
+    compare(new IDAStarSolver(heuristic),
+      new ParallelIDAStarSolver(heuristic, executor, threads),
+      size, count, seed);
+   }
+   finally
+   {
+    executor.shutdownNow();
+   }
+  }
+  catch (IOException failure)
+  {
+   System.err.println(failure.getMessage());
+   System.exit(2);
+  }
+  catch (IllegalArgumentException invalid)
+  {
+   System.err.println(invalid.getMessage());
+   System.exit(1);
+  }
+ }
+
+ /**
+  * Solves positions with two solvers and prints statistics
+  * of each run, followed by the totals.
+  */
+ static void compare(Solver baseline, Solver contender, int size, int count, long seed)
+ {
+  ScrambleGenerator positions = new ScrambleGenerator(size, new SplitMixRandom(seed));
+  long baselineNanos = 0L, contenderNanos = 0L;
+  long baselineNodes = 0L, contenderNodes = 0L;
+  System.out.println("layout\tlength\tbaseline nodes\tbaseline ms\tnodes\tms\tspeedup");
+  for (int k = 0; count > k; k++)
+  {
+   BoardState start = positions.next();
+   Solution expected = baseline.solve(start);
+   Solution actual = contender.solve(start);
+   if (expected.getLength() != actual.getLength())
+    throw new IllegalStateException("Solution lengths differ for " + start
+      + ": " + expected.getLength() + " and " + actual.getLength());
+   baselineNanos += expected.getElapsedNanos();
+   contenderNanos += actual.getElapsedNanos();
+   baselineNodes += expected.getNodeCount();
+   contenderNodes += actual.getNodeCount();
+   System.out.println(start.getTileLayout() + '\t' + expected.getLength()
+     + '\t' + expected.getNodeCount() + '\t' + expected.getElapsedNanos() / 1000000L
+     + '\t' + actual.getNodeCount() + '\t' + actual.getElapsedNanos() / 1000000L
+     + '\t' + speedup(expected.getElapsedNanos(), actual.getElapsedNanos()));
+  }
+  System.out.println("total\t\t" + baselineNodes + '\t' + baselineNanos / 1000000L
+    + '\t' + contenderNodes + '\t' + contenderNanos / 1000000L
+    + '\t' + speedup(baselineNanos, contenderNanos));
+ }
+
+ private static String speedup(long baselineNanos, long nanos)
+ {
+  return String.format("%.2f", (double)baselineNanos / Math.max(1L, nanos));
+ }
+}